@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server;
+
+import java.security.Provider;
+import java.security.Security;
+
+import lombok.val;
+
+public final class SecurityProviders
+{
+	private SecurityProviders()
+	{
+	}
+
+	public static String add(String className) throws ReflectiveOperationException
+	{
+		val provider = (Provider)Class.forName(className).getDeclaredConstructor().newInstance();
+		if (Security.getProvider(provider.getName()) == null)
+			Security.addProvider(provider);
+		return provider.getName();
+	}
+}
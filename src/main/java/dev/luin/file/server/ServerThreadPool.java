@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server;
+
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@AllArgsConstructor
+public class ServerThreadPool implements SystemInterface
+{
+	@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+	@AllArgsConstructor
+	@Getter
+	private enum ServerProperties
+	{
+		MIN_THREADS("server.threadPool.minThreads"),
+		MAX_THREADS("server.threadPool.maxThreads"),
+		IDLE_TIMEOUT("server.threadPool.idleTimeout"),
+		RESERVED_THREADS("server.threadPool.reservedThreads"),
+		QUEUE_SIZE("server.threadPool.queueSize"),
+		VIRTUAL_THREADS("server.threadPool.virtualThreads");
+
+		String name;
+	}
+
+	private static final String TRUE = "true";
+	Properties properties;
+
+	public ThreadPool create()
+	{
+		return TRUE.equals(properties.getProperty(ServerProperties.VIRTUAL_THREADS.name))
+				? createVirtualThreadPool()
+				: createQueuedThreadPool();
+	}
+
+	private ThreadPool createVirtualThreadPool()
+	{
+		if (!VirtualThreadPool.isSupported())
+		{
+			println("Virtual threads are not supported by this JVM! Use Java 21 or higher or disable " + ServerProperties.VIRTUAL_THREADS.name);
+			exit(1);
+		}
+		println("Using virtual threads");
+		return new VirtualThreadPool();
+	}
+
+	private ThreadPool createQueuedThreadPool()
+	{
+		val minThreads = Integer.parseInt(properties.getProperty(ServerProperties.MIN_THREADS.name));
+		val maxThreads = Integer.parseInt(properties.getProperty(ServerProperties.MAX_THREADS.name));
+		val idleTimeout = Integer.parseInt(properties.getProperty(ServerProperties.IDLE_TIMEOUT.name));
+		val queueSize = properties.getProperty(ServerProperties.QUEUE_SIZE.name);
+		val result = StringUtils.isEmpty(queueSize)
+				? new QueuedThreadPool(maxThreads,minThreads,idleTimeout)
+				: new QueuedThreadPool(maxThreads,minThreads,idleTimeout,new BlockingArrayQueue<>(Integer.parseInt(queueSize)));
+		result.setReservedThreads(Integer.parseInt(properties.getProperty(ServerProperties.RESERVED_THREADS.name)));
+		return result;
+	}
+}
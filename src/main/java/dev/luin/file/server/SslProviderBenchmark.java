@@ -0,0 +1,251 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.eclipse.jetty.util.resource.Resource;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@AllArgsConstructor
+public class SslProviderBenchmark implements Config, SystemInterface
+{
+	@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+	@AllArgsConstructor
+	@Getter
+	private enum Option
+	{
+		HELP("h"),
+		PROVIDER("provider"),
+		PROVIDER_CLASS("providerClass"),
+		PROTOCOL("protocol"),
+		CIPHER_SUITE("cipherSuite"),
+		SIZE("size"),
+		KEY_STORE_TYPE("keyStoreType"),
+		KEY_STORE_PATH("keyStorePath"),
+		KEY_STORE_PASSWORD("keyStorePassword");
+
+		String name;
+	}
+
+	@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+	@AllArgsConstructor
+	@Getter
+	private enum DefaultValue
+	{
+		PROVIDER("SunJSSE"),
+		PROTOCOL("TLSv1.2"),
+		SIZE("1024"),
+		KEYSTORE_TYPE("PKCS12"),
+		KEYSTORE_FILE("dev/luin/file/server/core/keystore.p12"),
+		KEYSTORE_PASSWORD("password");
+
+		String value;
+	}
+
+	private static final int RECORD_SIZE = 16 * 1024;
+	private static final int MB = 1024 * 1024;
+	CommandLine cmd;
+
+	public static void main(String[] args) throws Exception
+	{
+		val options = createOptions();
+		val cmd = new DefaultParser().parse(options,args);
+		if (cmd.hasOption(Option.HELP.name))
+			new HelpFormatter().printHelp("SslProviderBenchmark",options,true);
+		else
+			new SslProviderBenchmark(cmd).run();
+	}
+
+	private static Options createOptions()
+	{
+		val result = new Options();
+		result.addOption(Option.HELP.name,false,"print this message");
+		result.addOption(Option.PROVIDER.name,true,"SSL (JSSE) provider to benchmark, can be repeated [default: " + DefaultValue.PROVIDER.value + "]");
+		result.addOption(Option.PROVIDER_CLASS.name,true,"SSL (JSSE) provider class to register, can be repeated [default: " + NONE + "]");
+		result.addOption(Option.PROTOCOL.name,true,"set SSL protocol [default: " + DefaultValue.PROTOCOL.value + "]");
+		result.addOption(Option.CIPHER_SUITE.name,true,"set SSL CipherSuite [default: " + NONE + "]");
+		result.addOption(Option.SIZE.name,true,"set number of MB to transfer per provider [default: " + DefaultValue.SIZE.value + "]");
+		result.addOption(Option.KEY_STORE_TYPE.name,true,"set keystore type [default: " + DefaultValue.KEYSTORE_TYPE.value + "]");
+		result.addOption(Option.KEY_STORE_PATH.name,true,"set keystore path [default: " + DefaultValue.KEYSTORE_FILE.value + "]");
+		result.addOption(Option.KEY_STORE_PASSWORD.name,true,"set keystore password [default: " + DefaultValue.KEYSTORE_PASSWORD.value + "]");
+		return result;
+	}
+
+	private void run() throws Exception
+	{
+		if (cmd.hasOption(Option.PROVIDER_CLASS.name))
+			for (val providerClass : cmd.getOptionValues(Option.PROVIDER_CLASS.name))
+				println("Registered provider " + SecurityProviders.add(providerClass));
+		val keyStore = loadKeyStore();
+		val providers = cmd.hasOption(Option.PROVIDER.name) ? cmd.getOptionValues(Option.PROVIDER.name) : new String[]{DefaultValue.PROVIDER.value};
+		val size = Long.parseLong(cmd.getOptionValue(Option.SIZE.name,DefaultValue.SIZE.value)) * MB;
+		for (val provider : providers)
+			benchmark(provider,createSslContext(provider,keyStore),size);
+	}
+
+	private KeyStore loadKeyStore() throws IOException, GeneralSecurityException
+	{
+		val path = cmd.getOptionValue(Option.KEY_STORE_PATH.name,DefaultValue.KEYSTORE_FILE.value);
+		val resource = getResource(path);
+		if (resource == null || !resource.exists())
+			throw new IOException("KeyStore " + path + " not found!");
+		return loadKeyStore(resource);
+	}
+
+	private KeyStore loadKeyStore(Resource resource) throws IOException, GeneralSecurityException
+	{
+		val result = KeyStore.getInstance(cmd.getOptionValue(Option.KEY_STORE_TYPE.name,DefaultValue.KEYSTORE_TYPE.value));
+		try (val inputStream = resource.getInputStream())
+		{
+			result.load(inputStream,getKeyStorePassword());
+		}
+		return result;
+	}
+
+	private char[] getKeyStorePassword()
+	{
+		return cmd.getOptionValue(Option.KEY_STORE_PASSWORD.name,DefaultValue.KEYSTORE_PASSWORD.value).toCharArray();
+	}
+
+	private SSLContext createSslContext(String provider, KeyStore keyStore) throws GeneralSecurityException
+	{
+		val keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagerFactory.init(keyStore,getKeyStorePassword());
+		// the server certificate is trusted by the client engine through the keystore itself
+		val trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagerFactory.init(keyStore);
+		val result = SSLContext.getInstance(cmd.getOptionValue(Option.PROTOCOL.name,DefaultValue.PROTOCOL.value),provider);
+		result.init(keyManagerFactory.getKeyManagers(),trustManagerFactory.getTrustManagers(),null);
+		return result;
+	}
+
+	private SSLEngine createEngine(SSLContext sslContext, boolean clientMode)
+	{
+		val result = sslContext.createSSLEngine();
+		result.setUseClientMode(clientMode);
+		result.setEnabledProtocols(new String[]{cmd.getOptionValue(Option.PROTOCOL.name,DefaultValue.PROTOCOL.value)});
+		if (cmd.hasOption(Option.CIPHER_SUITE.name))
+			result.setEnabledCipherSuites(new String[]{cmd.getOptionValue(Option.CIPHER_SUITE.name)});
+		return result;
+	}
+
+	private void benchmark(String provider, SSLContext sslContext, long size) throws SSLException
+	{
+		val server = createEngine(sslContext,false);
+		val client = createEngine(sslContext,true);
+		val packetSize = server.getSession().getPacketBufferSize();
+		val serverToClient = ByteBuffer.allocateDirect(packetSize);
+		val clientToServer = ByteBuffer.allocateDirect(packetSize);
+		val serverData = ByteBuffer.allocateDirect(server.getSession().getApplicationBufferSize());
+		val clientData = ByteBuffer.allocateDirect(client.getSession().getApplicationBufferSize());
+		handshake(server,client,serverToClient,clientToServer,serverData,clientData);
+		val data = ByteBuffer.allocateDirect(RECORD_SIZE);
+		long encryptNanos = 0;
+		long decryptNanos = 0;
+		long transferred = 0;
+		while (transferred < size)
+		{
+			data.clear();
+			serverToClient.clear();
+			clientData.clear();
+			val encryptStart = System.nanoTime();
+			val result = server.wrap(data,serverToClient);
+			val decryptStart = System.nanoTime();
+			serverToClient.flip();
+			val unwrapResult = client.unwrap(serverToClient,clientData);
+			val end = System.nanoTime();
+			encryptNanos += decryptStart - encryptStart;
+			decryptNanos += end - decryptStart;
+			// anything but OK (CLOSED, BUFFER_OVERFLOW) would consume nothing and loop forever
+			checkStatus("wrap",result);
+			checkStatus("unwrap",unwrapResult);
+			transferred += result.bytesConsumed();
+		}
+		println(provider + " " + server.getSession().getProtocol() + " " + server.getSession().getCipherSuite()
+				+ ": encrypt " + getThroughput(transferred,encryptNanos) + " MB/s per core"
+				+ ", decrypt " + getThroughput(transferred,decryptNanos) + " MB/s per core");
+	}
+
+	private void handshake(SSLEngine server, SSLEngine client, ByteBuffer serverToClient, ByteBuffer clientToServer, ByteBuffer serverData, ByteBuffer clientData) throws SSLException
+	{
+		val empty = ByteBuffer.allocate(0);
+		server.beginHandshake();
+		client.beginHandshake();
+		while (isHandshaking(server) || isHandshaking(client))
+		{
+			client.wrap(empty,clientToServer);
+			server.wrap(empty,serverToClient);
+			clientToServer.flip();
+			server.unwrap(clientToServer,serverData);
+			clientToServer.compact();
+			serverToClient.flip();
+			client.unwrap(serverToClient,clientData);
+			serverToClient.compact();
+			runDelegatedTasks(server);
+			runDelegatedTasks(client);
+		}
+		serverData.clear();
+		clientData.clear();
+	}
+
+	private void checkStatus(String operation, SSLEngineResult result) throws SSLException
+	{
+		if (result.getStatus() != Status.OK)
+			throw new SSLException(operation + " failed with status " + result.getStatus());
+	}
+
+	private boolean isHandshaking(SSLEngine engine)
+	{
+		val status = engine.getHandshakeStatus();
+		return status != HandshakeStatus.NOT_HANDSHAKING && status != HandshakeStatus.FINISHED;
+	}
+
+	private void runDelegatedTasks(SSLEngine engine)
+	{
+		Runnable task;
+		while ((task = engine.getDelegatedTask()) != null)
+			task.run();
+	}
+
+	private long getThroughput(long bytes, long nanos)
+	{
+		return nanos == 0 ? 0 : (long)(bytes / ((double)nanos / TimeUnit.SECONDS.toNanos(1)) / MB);
+	}
+}
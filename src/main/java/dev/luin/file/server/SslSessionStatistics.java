@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@ManagedObject("SSL session statistics")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SslSessionStatistics implements Connection.Listener
+{
+	LongAdder handshakes = new LongAdder();
+	LongAdder resumed = new LongAdder();
+	LongAdder failed = new LongAdder();
+	LongAdder handshakeTime = new LongAdder();
+
+	@Override
+	public void onOpened(Connection connection)
+	{
+		if (connection instanceof SslConnection)
+			((SslConnection)connection).addHandshakeListener(new HandshakeListener(connection.getCreatedTimeStamp()));
+	}
+
+	@Override
+	public void onClosed(Connection connection)
+	{
+		// Do nothing
+	}
+
+	@ManagedAttribute("number of successful handshakes")
+	public long getHandshakes()
+	{
+		return handshakes.sum();
+	}
+
+	@ManagedAttribute("number of handshakes that resumed an existing session")
+	public long getResumed()
+	{
+		return resumed.sum();
+	}
+
+	@ManagedAttribute("number of failed handshakes")
+	public long getFailed()
+	{
+		return failed.sum();
+	}
+
+	@ManagedAttribute("total time in ms spent from connection open to successful handshake")
+	public long getHandshakeTime()
+	{
+		return handshakeTime.sum();
+	}
+
+	@ManagedAttribute("fraction of successful handshakes that resumed an existing session")
+	public double getResumptionRate()
+	{
+		val total = getHandshakes();
+		return total == 0 ? 0 : (double)getResumed() / total;
+	}
+
+	@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+	@AllArgsConstructor
+	private class HandshakeListener implements SslHandshakeListener
+	{
+		long openedTime;
+
+		@Override
+		public void handshakeSucceeded(Event event)
+		{
+			handshakes.increment();
+			handshakeTime.add(System.currentTimeMillis() - openedTime);
+			// a session created before this connection was opened has been resumed
+			if (event.getSSLEngine().getSession().getCreationTime() < openedTime)
+				resumed.increment();
+		}
+
+		@Override
+		public void handshakeFailed(Event event, Throwable failure)
+		{
+			failed.increment();
+		}
+	}
+}
@@ -31,6 +31,7 @@ import org.apache.cxf.common.logging.LogUtils;
 import org.apache.cxf.common.logging.Slf4jLogger;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.hsqldb.server.ServerAcl.AclFormatException;
 import org.springframework.web.context.ContextLoaderListener;
 import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
@@ -39,6 +40,7 @@ import dev.luin.file.server.file.FileServer;
 import dev.luin.file.server.web.HealthServer;
 import dev.luin.file.server.web.HsqlDb;
 import dev.luin.file.server.web.Jmx;
+import dev.luin.file.server.web.PrometheusMetrics;
 import dev.luin.file.server.web.WebAuthentication;
 import dev.luin.file.server.web.WebServer;
 import lombok.AccessLevel;
@@ -101,6 +103,7 @@ public class Start implements SystemInterface
 		HsqlDb.addOptions(result);
 		Jmx.addOptions(result);
 		HealthServer.addOptions(result);
+		PrometheusMetrics.addOptions(result);
 		return result;
 	}
 
@@ -135,10 +138,15 @@ public class Start implements SystemInterface
 	public static Start of(CommandLine cmd) throws ParseException, IOException
 	{
 		val properties = getProperties();
-		val server = new Server();
+		val server = createServer(properties);
 		return new Start(cmd,properties,server);
 	}
 
+	protected static Server createServer(Properties properties)
+	{
+		return new Server(new ServerThreadPool(properties).create());
+	}
+
 	private static Properties getProperties() throws IOException
 	{
 		return AppConfig.PROPERTY_SOURCE.getProperties();
@@ -169,8 +177,8 @@ public class Start implements SystemInterface
 			registerConfig(context);
 			val contextLoaderListener = new ContextLoaderListener(context);
 			val webServer = initWebServer(handlerCollection,contextLoaderListener);
-			initFileServer(handlerCollection,contextLoaderListener);
-			initHealthServer(handlerCollection,webServer);
+			val fileServer = initFileServer(handlerCollection,contextLoaderListener);
+			initHealthServer(handlerCollection,webServer,fileServer,context);
 		}
 	}
 
@@ -209,21 +217,35 @@ public class Start implements SystemInterface
 		return webServer;
 	}
 
-	private void initFileServer(final ContextHandlerCollection handlerCollection, final ContextLoaderListener contextLoaderListener) throws IOException
+	private FileServer initFileServer(final ContextHandlerCollection handlerCollection, final ContextLoaderListener contextLoaderListener) throws IOException
 	{
 		FileServer fileServer = new FileServer(properties);
 		fileServer.init(server);
 		handlerCollection.addHandler(fileServer.createContextHandler(contextLoaderListener));
+		return fileServer;
 	}
 
-	private void initHealthServer(final ContextHandlerCollection handlerCollection, WebServer webServer) throws IOException
+	private void initHealthServer(final ContextHandlerCollection handlerCollection, WebServer webServer, FileServer fileServer, final AnnotationConfigWebApplicationContext context) throws IOException
 	{
 		if (cmd.hasOption(HealthServer.getHealthOption()))
 		{
 			val health = new HealthServer(cmd,webServer);
 			health.init(server);
-			handlerCollection.addHandler(health.createContextHandler());
+			val contextHandler = health.createContextHandler();
+			initMetrics(contextHandler,context,fileServer,webServer);
+			handlerCollection.addHandler(contextHandler);
 		}
+		else if (PrometheusMetrics.isEnabled(cmd))
+		{
+			println("Metrics service not available: option -" + PrometheusMetrics.getMetricsOption() + " requires option -" + HealthServer.getHealthOption());
+			exit(1);
+		}
+	}
+
+	private void initMetrics(final ServletContextHandler contextHandler, final AnnotationConfigWebApplicationContext context, FileServer fileServer, WebServer webServer)
+	{
+		if (PrometheusMetrics.isEnabled(cmd))
+			new PrometheusMetrics().init(server,contextHandler,context,fileServer,webServer);
 	}
 
 	private void startServer() throws Exception
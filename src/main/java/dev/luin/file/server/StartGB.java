@@ -49,7 +49,7 @@ public class StartGB extends Start
 	public static Start of(CommandLine cmd) throws IOException
 	{
 		val properties = getProperties();
-		val server = new Server();
+		val server = createServer(properties);
 		return new StartGB(cmd,properties,server);
 	}
 
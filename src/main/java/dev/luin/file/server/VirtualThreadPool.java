@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+// Executors.newVirtualThreadPerTaskExecutor is looked up reflectively, because the project is compiled for Java 8
+@ManagedObject("Virtual thread pool")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool
+{
+	private static final String NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = "newVirtualThreadPerTaskExecutor";
+	final AtomicInteger threads = new AtomicInteger();
+	volatile ExecutorService executor;
+
+	public static boolean isSupported()
+	{
+		try
+		{
+			Executors.class.getMethod(NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR);
+			return true;
+		}
+		catch (NoSuchMethodException e)
+		{
+			return false;
+		}
+	}
+
+	@Override
+	protected void doStart() throws Exception
+	{
+		executor = (ExecutorService)Executors.class.getMethod(NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR).invoke(null);
+		super.doStart();
+	}
+
+	@Override
+	protected void doStop() throws Exception
+	{
+		super.doStop();
+		executor.shutdownNow();
+		executor.awaitTermination(getStopTimeout(),TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void execute(Runnable command)
+	{
+		executor.execute(() ->
+		{
+			threads.incrementAndGet();
+			try
+			{
+				command.run();
+			}
+			finally
+			{
+				threads.decrementAndGet();
+			}
+		});
+	}
+
+	@Override
+	public void join() throws InterruptedException
+	{
+		executor.awaitTermination(Long.MAX_VALUE,TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	@ManagedAttribute("number of running virtual threads")
+	public int getThreads()
+	{
+		return threads.get();
+	}
+
+	@Override
+	public int getIdleThreads()
+	{
+		return 0;
+	}
+
+	@Override
+	public boolean isLowOnThreads()
+	{
+		return false;
+	}
+}
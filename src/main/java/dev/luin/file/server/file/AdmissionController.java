@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+import lombok.AccessLevel;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@ManagedObject("Admission controller")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AdmissionController
+{
+	private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+	private static final int EVICTED = -1;
+	private static final int REJECTED = 0;
+	private static final int ADMITTED = 1;
+	private static final int RETRY = 2;
+	String name;
+	int maxConcurrentPerClient;
+	long queueTimeoutNanos;
+	LongSupplier clock;
+	ConcurrentHashMap<String,AtomicInteger> active = new ConcurrentHashMap<>();
+	AtomicLong lastEviction;
+	ReentrantLock lock;
+	Condition released;
+	AtomicInteger waiting = new AtomicInteger();
+	LongAdder admitted = new LongAdder();
+	LongAdder queued = new LongAdder();
+	LongAdder rejected = new LongAdder();
+
+	public AdmissionController(String name, int maxConcurrentPerClient, long queueTimeout)
+	{
+		this(name,maxConcurrentPerClient,queueTimeout,System::nanoTime);
+	}
+
+	AdmissionController(String name, int maxConcurrentPerClient, long queueTimeout, LongSupplier clock)
+	{
+		this.name = name;
+		this.maxConcurrentPerClient = maxConcurrentPerClient;
+		this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeout);
+		this.clock = clock;
+		this.lastEviction = new AtomicLong(clock.getAsLong());
+		// the lock is only needed to let queued transfers wait for a release
+		this.lock = queueTimeoutNanos > 0 ? new ReentrantLock(true) : null;
+		this.released = lock != null ? lock.newCondition() : null;
+	}
+
+	public boolean isEnabled()
+	{
+		return maxConcurrentPerClient > 0;
+	}
+
+	public boolean acquire(String client)
+	{
+		evictIdleClients();
+		if (tryAcquire(client) || queue(client))
+		{
+			admitted.increment();
+			return true;
+		}
+		rejected.increment();
+		return false;
+	}
+
+	public void release(String client)
+	{
+		val counter = active.get(client);
+		if (counter != null)
+			counter.decrementAndGet();
+		if (lock != null && waiting.get() > 0)
+			signalWaiters();
+	}
+
+	private boolean tryAcquire(String client)
+	{
+		while (true)
+		{
+			val result = tryAcquire(getCounter(client));
+			if (result != RETRY)
+				return result == ADMITTED;
+		}
+	}
+
+	private int tryAcquire(AtomicInteger counter)
+	{
+		while (true)
+		{
+			val current = counter.get();
+			if (current == EVICTED)
+				return RETRY;
+			if (current >= maxConcurrentPerClient)
+				return REJECTED;
+			if (counter.compareAndSet(current,current + 1))
+				return ADMITTED;
+		}
+	}
+
+	private AtomicInteger getCounter(String client)
+	{
+		val result = active.get(client);
+		return result != null && result.get() != EVICTED ? result : active.compute(client,(k,v) -> v != null && v.get() != EVICTED ? v : new AtomicInteger());
+	}
+
+	// an idle counter is first marked as evicted, so a transfer that still holds a reference to it looks up a new one instead of using it
+	private void evictIdleClients()
+	{
+		val now = clock.getAsLong();
+		val last = lastEviction.get();
+		if (now - last > EVICTION_INTERVAL_NANOS && lastEviction.compareAndSet(last,now))
+			active.values().removeIf(c -> c.compareAndSet(0,EVICTED));
+	}
+
+	private boolean queue(String client)
+	{
+		if (lock == null)
+			return false;
+		queued.increment();
+		waiting.incrementAndGet();
+		lock.lock();
+		try
+		{
+			long nanos = queueTimeoutNanos;
+			while (!tryAcquire(client))
+			{
+				if (nanos <= 0)
+					return false;
+				nanos = released.awaitNanos(nanos);
+			}
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		finally
+		{
+			lock.unlock();
+			waiting.decrementAndGet();
+		}
+	}
+
+	private void signalWaiters()
+	{
+		lock.lock();
+		try
+		{
+			released.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@ManagedAttribute("controller name")
+	public String getName()
+	{
+		return name;
+	}
+
+	@ManagedAttribute("number of clients with a transfer counter")
+	public int getClients()
+	{
+		return active.size();
+	}
+
+	@ManagedAttribute("number of active transfers")
+	public int getActive()
+	{
+		return active.values().stream().mapToInt(c -> Math.max(0,c.get())).sum();
+	}
+
+	@ManagedAttribute("number of admitted transfers")
+	public long getAdmitted()
+	{
+		return admitted.sum();
+	}
+
+	@ManagedAttribute("number of transfers that had to wait for a slot")
+	public long getQueued()
+	{
+		return queued.sum();
+	}
+
+	@ManagedAttribute("number of rejected transfers")
+	public long getRejected()
+	{
+		return rejected.sum();
+	}
+}
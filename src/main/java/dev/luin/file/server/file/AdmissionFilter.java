@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@AllArgsConstructor
+public class AdmissionFilter implements Filter
+{
+	AdmissionController admissionController;
+	String clientCertificateHeader;
+	String retryAfter;
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException
+	{
+		// Do nothing
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+	{
+		val client = ClientKey.of((HttpServletRequest)request,clientCertificateHeader);
+		if (admissionController.acquire(client))
+		{
+			try
+			{
+				chain.doFilter(request,response);
+			}
+			finally
+			{
+				admissionController.release(client);
+			}
+		}
+		else
+		{
+			val httpResponse = (HttpServletResponse)response;
+			httpResponse.setHeader(HttpHeader.RETRY_AFTER.asString(),retryAfter);
+			httpResponse.sendError(HttpStatus.TOO_MANY_REQUESTS_429);
+		}
+	}
+
+	@Override
+	public void destroy()
+	{
+		// Do nothing
+	}
+}
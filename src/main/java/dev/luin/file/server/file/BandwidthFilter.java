@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@AllArgsConstructor
+public class BandwidthFilter implements Filter
+{
+	BandwidthLimiter downloadLimiter;
+	BandwidthLimiter uploadLimiter;
+	String clientCertificateHeader;
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException
+	{
+		// Do nothing
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+	{
+		val client = ClientKey.of((HttpServletRequest)request,clientCertificateHeader);
+		chain.doFilter(
+				uploadLimiter.isEnabled() ? throttle((HttpServletRequest)request,client) : request,
+				downloadLimiter.isEnabled() ? throttle((HttpServletResponse)response,client) : response);
+	}
+
+	private HttpServletRequest throttle(HttpServletRequest request, String client)
+	{
+		return new HttpServletRequestWrapper(request)
+		{
+			@Override
+			public ServletInputStream getInputStream() throws IOException
+			{
+				return new ThrottledServletInputStream(super.getInputStream(),uploadLimiter,client);
+			}
+		};
+	}
+
+	private HttpServletResponse throttle(HttpServletResponse response, String client)
+	{
+		return new HttpServletResponseWrapper(response)
+		{
+			@Override
+			public ServletOutputStream getOutputStream() throws IOException
+			{
+				return new ThrottledServletOutputStream(super.getOutputStream(),downloadLimiter,client);
+			}
+		};
+	}
+
+	@Override
+	public void destroy()
+	{
+		// Do nothing
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+import lombok.AccessLevel;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@ManagedObject("Bandwidth limiter")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class BandwidthLimiter
+{
+	private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+	String name;
+	TokenBucket global;
+	long bytesPerSecondPerClient;
+	ConcurrentHashMap<String,TokenBucket> clients = new ConcurrentHashMap<>();
+	AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+	LongAdder throttledBytes = new LongAdder();
+	LongAdder throttledNanos = new LongAdder();
+
+	public BandwidthLimiter(String name, long bytesPerSecond, long bytesPerSecondPerClient)
+	{
+		this.name = name;
+		this.global = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond) : null;
+		this.bytesPerSecondPerClient = bytesPerSecondPerClient;
+	}
+
+	public long getBytesPerSecond()
+	{
+		return global != null ? global.getBytesPerSecond() : 0;
+	}
+
+	public long getBytesPerSecondPerClient()
+	{
+		return bytesPerSecondPerClient;
+	}
+
+	public boolean isEnabled()
+	{
+		return global != null || bytesPerSecondPerClient > 0;
+	}
+
+	public void throttle(String client, int bytes) throws InterruptedIOException
+	{
+		val globalDelay = global != null ? global.acquire(bytes) : 0;
+		val clientDelay = bytesPerSecondPerClient > 0 ? getClientBucket(client).acquire(bytes) : 0;
+		val delay = Math.max(globalDelay,clientDelay);
+		if (delay > 0)
+		{
+			throttledBytes.add(bytes);
+			throttledNanos.add(delay);
+			sleep(delay);
+		}
+	}
+
+	private TokenBucket getClientBucket(String client)
+	{
+		evictIdleClients();
+		val result = clients.get(client);
+		return result != null ? result : clients.computeIfAbsent(client,k -> new TokenBucket(bytesPerSecondPerClient));
+	}
+
+	private void evictIdleClients()
+	{
+		val now = System.nanoTime();
+		val last = lastEviction.get();
+		if (now - last > EVICTION_INTERVAL_NANOS && lastEviction.compareAndSet(last,now))
+			clients.values().removeIf(TokenBucket::isIdle);
+	}
+
+	private void sleep(long nanos) throws InterruptedIOException
+	{
+		try
+		{
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	@ManagedAttribute("limiter name")
+	public String getName()
+	{
+		return name;
+	}
+
+	@ManagedAttribute("number of bytes that were delayed")
+	public long getThrottledBytes()
+	{
+		return throttledBytes.sum();
+	}
+
+	@ManagedAttribute("total time in ms that transfers were delayed")
+	public long getThrottledTime()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(throttledNanos.sum());
+	}
+
+	@ManagedAttribute("number of clients with a bandwidth bucket")
+	public int getClients()
+	{
+		return clients.size();
+	}
+}
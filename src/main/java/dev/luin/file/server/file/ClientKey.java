@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.security.cert.X509Certificate;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang3.StringUtils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.val;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ClientKey
+{
+	private static final String X509_CERTIFICATE_ATTRIBUTE = "javax.servlet.request.X509Certificate";
+
+	public static String of(HttpServletRequest request, String clientCertificateHeader)
+	{
+		if (!StringUtils.isEmpty(clientCertificateHeader) && request.getHeader(clientCertificateHeader) != null)
+			return request.getHeader(clientCertificateHeader);
+		val certificates = (X509Certificate[])request.getAttribute(X509_CERTIFICATE_ATTRIBUTE);
+		if (certificates != null && certificates.length > 0)
+			return certificates[0].getSerialNumber().toString(16) + "@" + certificates[0].getIssuerX500Principal().getName();
+		return request.getRemoteAddr();
+	}
+}
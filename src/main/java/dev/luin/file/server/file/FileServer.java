@@ -22,20 +22,33 @@ import java.util.Properties;
 import javax.servlet.DispatcherType;
 
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.ConnectionLimit;
 import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.springframework.web.context.ContextLoaderListener;
 
 import dev.luin.file.server.Config;
+import dev.luin.file.server.SecurityProviders;
+import dev.luin.file.server.SslSessionStatistics;
 import dev.luin.file.server.SystemInterface;
 import dev.luin.file.server.core.server.download.http.DownloadServlet;
 import dev.luin.file.server.core.server.servlet.ClientCertificateManagerFilter;
 import dev.luin.file.server.core.server.upload.http.UploadServlet;
+import dev.luin.file.server.file.RequestTrace.Phase;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -57,6 +70,8 @@ public class FileServer implements Config, SystemInterface
 		SERVER_SSL("server.ssl"),
 		SERVER_PROTOCOLS("server.protocols"),
 		SERVER_CIPHER_SUITES("server.cipherSuites"),
+		SERVER_SSL_PROVIDER("server.sslProvider"),
+		SERVER_SSL_PROVIDER_CLASS("server.sslProviderClass"),
 		KEYSTORE_TYPE("keystore.type"),
 		KEYSTORE_PATH("keystore.path"),
 		KEYSTORE_PASSWORD("keystore.password"),
@@ -64,13 +79,42 @@ public class FileServer implements Config, SystemInterface
 		TRUSTSTORE_PATH("truststore.path"),
 		TRUSTSTORE_PASSWORD("truststore.password"),
 		SERVER_CLIENT_CERTIFICATE_HEADER("server.clientCertificateHeader"),
-		SERVER_CONNECTION_LIMIT("server.connectionLimit");
+		SERVER_CONNECTION_LIMIT("server.connectionLimit"),
+		SERVER_DIRECT_BUFFERS("server.directBuffers"),
+		SERVER_GZIP("server.gzip"),
+		SERVER_GZIP_MIN_SIZE("server.gzip.minSize"),
+		SERVER_GZIP_MIME_TYPES("server.gzip.mimeTypes"),
+		SERVER_HTTP2("server.http2"),
+		SERVER_HTTP2_MAX_CONCURRENT_STREAMS("server.http2.maxConcurrentStreams"),
+		SERVER_HTTP2_INITIAL_STREAM_RECV_WINDOW("server.http2.initialStreamRecvWindow"),
+		SERVER_HTTP2_INITIAL_SESSION_RECV_WINDOW("server.http2.initialSessionRecvWindow"),
+		SERVER_IDLE_TIMEOUT("server.idleTimeout"),
+		SERVER_MIN_REQUEST_DATA_RATE("server.minRequestDataRate"),
+		SERVER_MIN_RESPONSE_DATA_RATE("server.minResponseDataRate"),
+		SERVER_DOWNLOAD_BANDWIDTH("server.download.bandwidth"),
+		SERVER_DOWNLOAD_BANDWIDTH_PER_CLIENT("server.download.bandwidthPerClient"),
+		SERVER_UPLOAD_BANDWIDTH("server.upload.bandwidth"),
+		SERVER_UPLOAD_BANDWIDTH_PER_CLIENT("server.upload.bandwidthPerClient"),
+		SERVER_DOWNLOAD_MAX_CONCURRENT_PER_CLIENT("server.download.maxConcurrentPerClient"),
+		SERVER_UPLOAD_MAX_CONCURRENT_PER_CLIENT("server.upload.maxConcurrentPerClient"),
+		SERVER_ADMISSION_QUEUE_TIMEOUT("server.admission.queueTimeout"),
+		SERVER_ADMISSION_RETRY_AFTER("server.admission.retryAfter"),
+		SERVER_SSL_SESSION_CACHE_SIZE("server.sslSessionCacheSize"),
+		SERVER_SSL_SESSION_TIMEOUT("server.sslSessionTimeout"),
+		SERVER_SSL_SESSION_TICKETS("server.sslSessionTickets"),
+		SERVER_TRACE_SLOW_REQUEST_THRESHOLD("server.trace.slowRequestThreshold"),
+		SERVER_TRACE_OTLP_ENDPOINT("server.trace.otlpEndpoint"),
+		SERVER_THREAD_POOL_VIRTUAL_THREADS("server.threadPool.virtualThreads");
 
 		String name;
 	}
 
 	private static final String SERVER_CONNECTOR_NAME = "server";
 	private static final String TRUE = "true";
+	private static final String SESSION_TICKET_PROPERTY = "jdk.tls.server.enableSessionTicketExtension";
+	private static final int SESSION_TICKET_MIN_JAVA_VERSION = 13;
+	private static final String DOWNLOAD_PATH = "/download/*";
+	private static final String UPLOAD_PATH = "/upload/*";
 	Properties properties;
 
 	public void init(Server server) throws IOException
@@ -82,17 +126,58 @@ public class FileServer implements Config, SystemInterface
 		initConnectionLimit(server,connector);
 	}
 
+	public String getServerConnectorName()
+	{
+		return SERVER_CONNECTOR_NAME;
+	}
+
+	public String getDownloadPath()
+	{
+		return properties.getProperty(ServerProperties.SERVER_PATH.name) + StringUtils.removeEnd(DOWNLOAD_PATH,"/*");
+	}
+
+	public String getUploadPath()
+	{
+		return properties.getProperty(ServerProperties.SERVER_PATH.name) + StringUtils.removeEnd(UPLOAD_PATH,"/*");
+	}
+
 	private SslContextFactory createFileServerSslContextFactory() throws IOException
 	{
 		val result = new SslContextFactory.Server();
 		addKeyStore(result);
 		addFileServerTrustStore(result);
+		initSslSessions(result);
+		if (isHttp2Enabled())
+			result.setCipherComparator(HTTP2Cipher.COMPARATOR);
 		return result;
 	}
 
+	private void initSslSessions(SslContextFactory.Server sslContextFactory)
+	{
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_SSL_SESSION_CACHE_SIZE.name)))
+			sslContextFactory.setSslSessionCacheSize(Integer.parseInt(properties.getProperty(ServerProperties.SERVER_SSL_SESSION_CACHE_SIZE.name)));
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_SSL_SESSION_TIMEOUT.name)))
+			sslContextFactory.setSslSessionTimeout(Integer.parseInt(properties.getProperty(ServerProperties.SERVER_SSL_SESSION_TIMEOUT.name)));
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_SSL_SESSION_TICKETS.name)))
+		{
+			if (getJavaVersion() < SESSION_TICKET_MIN_JAVA_VERSION)
+				println("Warning: " + ServerProperties.SERVER_SSL_SESSION_TICKETS.name + " is ignored, " + SESSION_TICKET_PROPERTY + " requires Java " + SESSION_TICKET_MIN_JAVA_VERSION + " or later");
+			setProperty(SESSION_TICKET_PROPERTY,properties.getProperty(ServerProperties.SERVER_SSL_SESSION_TICKETS.name));
+		}
+	}
+
+	private static int getJavaVersion()
+	{
+		val version = System.getProperty("java.specification.version");
+		return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+	}
+
 	private ServerConnector createFileServerHttpsConnector(Server server, SslContextFactory factory)
 	{
-		val result = new ServerConnector(server,factory);
+		val result = new ServerConnector(server,factory,createHttpsConnectionFactories(createHttpConfiguration()));
+		initDirectBuffers(result);
+		initIdleTimeout(result);
+		result.addBean(new SslSessionStatistics());
 		result.setHost(properties.getProperty(ServerProperties.SERVER_HOST.name));
 		result.setPort(Integer.parseInt(properties.getProperty(ServerProperties.SERVER_PORT.name)));
 		result.setName(SERVER_CONNECTOR_NAME);
@@ -100,9 +185,20 @@ public class FileServer implements Config, SystemInterface
 		return result;
 	}
 
+	private void initDirectBuffers(ServerConnector connector)
+	{
+		if (TRUE.equals(properties.getProperty(ServerProperties.SERVER_DIRECT_BUFFERS.name)))
+		{
+			val sslConnectionFactory = connector.getConnectionFactory(SslConnectionFactory.class);
+			sslConnectionFactory.setDirectBuffersForEncryption(true);
+			sslConnectionFactory.setDirectBuffersForDecryption(true);
+		}
+	}
+
 	private ServerConnector createFileServerHttpConnector(Server server)
 	{
-		val result = new ServerConnector(server);
+		val result = new ServerConnector(server,createHttpConnectionFactories(createHttpConfiguration()));
+		initIdleTimeout(result);
 		result.setHost(properties.getProperty(ServerProperties.SERVER_HOST.name));
 		result.setPort(Integer.parseInt(properties.getProperty(ServerProperties.SERVER_PORT.name)));
 		result.setName(SERVER_CONNECTOR_NAME);
@@ -110,6 +206,60 @@ public class FileServer implements Config, SystemInterface
 		return result;
 	}
 
+	private HttpConfiguration createHttpConfiguration()
+	{
+		val result = new HttpConfiguration();
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_MIN_REQUEST_DATA_RATE.name)))
+			result.setMinRequestDataRate(Long.parseLong(properties.getProperty(ServerProperties.SERVER_MIN_REQUEST_DATA_RATE.name)));
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_MIN_RESPONSE_DATA_RATE.name)))
+			result.setMinResponseDataRate(Long.parseLong(properties.getProperty(ServerProperties.SERVER_MIN_RESPONSE_DATA_RATE.name)));
+		return result;
+	}
+
+	private void initIdleTimeout(ServerConnector connector)
+	{
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_IDLE_TIMEOUT.name)))
+			connector.setIdleTimeout(Long.parseLong(properties.getProperty(ServerProperties.SERVER_IDLE_TIMEOUT.name)));
+	}
+
+	private ConnectionFactory[] createHttpsConnectionFactories(HttpConfiguration httpConfig)
+	{
+		val http = new HttpConnectionFactory(httpConfig);
+		if (isHttp2Enabled())
+		{
+			val http2 = createHttp2ConnectionFactory(new HTTP2ServerConnectionFactory(httpConfig));
+			val alpn = new ALPNServerConnectionFactory(http2.getProtocol(),http.getProtocol());
+			alpn.setDefaultProtocol(http.getProtocol());
+			return new ConnectionFactory[]{alpn,http2,http};
+		}
+		else
+			return new ConnectionFactory[]{http};
+	}
+
+	private ConnectionFactory[] createHttpConnectionFactories(HttpConfiguration httpConfig)
+	{
+		val http = new HttpConnectionFactory(httpConfig);
+		return isHttp2Enabled()
+				? new ConnectionFactory[]{http,createHttp2ConnectionFactory(new HTTP2CServerConnectionFactory(httpConfig))}
+				: new ConnectionFactory[]{http};
+	}
+
+	private AbstractHTTP2ServerConnectionFactory createHttp2ConnectionFactory(AbstractHTTP2ServerConnectionFactory factory)
+	{
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_HTTP2_MAX_CONCURRENT_STREAMS.name)))
+			factory.setMaxConcurrentStreams(Integer.parseInt(properties.getProperty(ServerProperties.SERVER_HTTP2_MAX_CONCURRENT_STREAMS.name)));
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_HTTP2_INITIAL_STREAM_RECV_WINDOW.name)))
+			factory.setInitialStreamRecvWindow(Integer.parseInt(properties.getProperty(ServerProperties.SERVER_HTTP2_INITIAL_STREAM_RECV_WINDOW.name)));
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_HTTP2_INITIAL_SESSION_RECV_WINDOW.name)))
+			factory.setInitialSessionRecvWindow(Integer.parseInt(properties.getProperty(ServerProperties.SERVER_HTTP2_INITIAL_SESSION_RECV_WINDOW.name)));
+		return factory;
+	}
+
+	private boolean isHttp2Enabled()
+	{
+		return TRUE.equals(properties.getProperty(ServerProperties.SERVER_HTTP2.name));
+	}
+
 	private void initConnectionLimit(Server server, final org.eclipse.jetty.server.ServerConnector connector)
 	{
 		if (properties.containsKey(ServerProperties.SERVER_CONNECTION_LIMIT.name))
@@ -121,10 +271,123 @@ public class FileServer implements Config, SystemInterface
 		val result = new ServletContextHandler(ServletContextHandler.SESSIONS);
 		result.setVirtualHosts(new String[] {"@" + SERVER_CONNECTOR_NAME});
 		result.setContextPath("/");
+		addTracingFilter(result);
 		result.addFilter(createClientCertificateManagerFilterHolder(),"/*",EnumSet.allOf(DispatcherType.class));
-		result.addServlet(DownloadServlet.class,properties.getProperty(ServerProperties.SERVER_PATH.name) + "/download/*");
-		result.addServlet(UploadServlet.class,properties.getProperty(ServerProperties.SERVER_PATH.name) + "/upload/*");
+		addPhaseFilter(result,Phase.CERTIFICATE);
+		addAdmissionFilter(result,createAdmissionController("download",ServerProperties.SERVER_DOWNLOAD_MAX_CONCURRENT_PER_CLIENT),DOWNLOAD_PATH);
+		addAdmissionFilter(result,createAdmissionController("upload",ServerProperties.SERVER_UPLOAD_MAX_CONCURRENT_PER_CLIENT),UPLOAD_PATH);
+		addPhaseFilter(result,Phase.ADMISSION);
+		addBandwidthFilter(result);
+		result.addServlet(DownloadServlet.class,properties.getProperty(ServerProperties.SERVER_PATH.name) + DOWNLOAD_PATH);
+		result.addServlet(UploadServlet.class,properties.getProperty(ServerProperties.SERVER_PATH.name) + UPLOAD_PATH);
 		result.addEventListener(contextLoaderListener);
+		if (TRUE.equals(properties.getProperty(ServerProperties.SERVER_GZIP.name)))
+			result.setGzipHandler(createGzipHandler());
+		return result;
+	}
+
+	private boolean isTracingEnabled()
+	{
+		return !StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_TRACE_SLOW_REQUEST_THRESHOLD.name));
+	}
+
+	private void addTracingFilter(ServletContextHandler handler)
+	{
+		if (isTracingEnabled())
+		{
+			if (TRUE.equals(properties.getProperty(ServerProperties.SERVER_THREAD_POOL_VIRTUAL_THREADS.name)))
+				println("Warning: request tracing keeps its ring per thread; with " + ServerProperties.SERVER_THREAD_POOL_VIRTUAL_THREADS.name + " every request allocates a new ring and slow request dumps show no recent requests");
+			val traceExporter = createTraceExporter();
+			if (traceExporter != null)
+				handler.addBean(traceExporter);
+			val filter = new TracingFilter(getLongProperty(ServerProperties.SERVER_TRACE_SLOW_REQUEST_THRESHOLD),traceExporter);
+			handler.addFilter(new FilterHolder(filter),"/*",EnumSet.of(DispatcherType.REQUEST));
+		}
+	}
+
+	private TraceExporter createTraceExporter()
+	{
+		val endpoint = properties.getProperty(ServerProperties.SERVER_TRACE_OTLP_ENDPOINT.name);
+		if (StringUtils.isEmpty(endpoint))
+			return null;
+		try
+		{
+			val result = new TraceExporter(endpoint);
+			println("File Server exporting slow request traces to " + endpoint);
+			return result;
+		}
+		catch (NoClassDefFoundError e)
+		{
+			println("File Server not available: " + ServerProperties.SERVER_TRACE_OTLP_ENDPOINT.name + " requires opentelemetry-sdk and opentelemetry-exporter-otlp on the classpath");
+			exit(1);
+			return null;
+		}
+	}
+
+	private void addPhaseFilter(ServletContextHandler handler, Phase phase)
+	{
+		if (isTracingEnabled())
+			handler.addFilter(new FilterHolder(new PhaseFilter(phase)),"/*",EnumSet.of(DispatcherType.REQUEST));
+	}
+
+	private AdmissionController createAdmissionController(String name, ServerProperties maxConcurrentPerClient)
+	{
+		return new AdmissionController(name,(int)getLongProperty(maxConcurrentPerClient),getLongProperty(ServerProperties.SERVER_ADMISSION_QUEUE_TIMEOUT));
+	}
+
+	private void addAdmissionFilter(ServletContextHandler handler, AdmissionController admissionController, String path)
+	{
+		if (admissionController.isEnabled())
+		{
+			handler.addBean(admissionController);
+			val filter = new AdmissionFilter(admissionController,properties.getProperty(ServerProperties.SERVER_CLIENT_CERTIFICATE_HEADER.name),properties.getProperty(ServerProperties.SERVER_ADMISSION_RETRY_AFTER.name));
+			handler.addFilter(new FilterHolder(filter),properties.getProperty(ServerProperties.SERVER_PATH.name) + path,EnumSet.of(DispatcherType.REQUEST));
+		}
+	}
+
+	private void addBandwidthFilter(ServletContextHandler handler)
+	{
+		val downloadLimiter = new BandwidthLimiter("download",getLongProperty(ServerProperties.SERVER_DOWNLOAD_BANDWIDTH),getLongProperty(ServerProperties.SERVER_DOWNLOAD_BANDWIDTH_PER_CLIENT));
+		val uploadLimiter = new BandwidthLimiter("upload",getLongProperty(ServerProperties.SERVER_UPLOAD_BANDWIDTH),getLongProperty(ServerProperties.SERVER_UPLOAD_BANDWIDTH_PER_CLIENT));
+		checkMinDataRate(downloadLimiter,ServerProperties.SERVER_MIN_RESPONSE_DATA_RATE);
+		checkMinDataRate(uploadLimiter,ServerProperties.SERVER_MIN_REQUEST_DATA_RATE);
+		if (downloadLimiter.isEnabled() || uploadLimiter.isEnabled())
+		{
+			handler.addBean(downloadLimiter);
+			handler.addBean(uploadLimiter);
+			val filter = new BandwidthFilter(downloadLimiter,uploadLimiter,properties.getProperty(ServerProperties.SERVER_CLIENT_CERTIFICATE_HEADER.name));
+			handler.addFilter(new FilterHolder(filter),"/*",EnumSet.of(DispatcherType.REQUEST));
+		}
+	}
+
+	private void checkMinDataRate(BandwidthLimiter limiter, ServerProperties minDataRate)
+	{
+		val minBytesPerSecond = getLongProperty(minDataRate);
+		if (isBelow(limiter.getBytesPerSecond(),minBytesPerSecond) || isBelow(limiter.getBytesPerSecondPerClient(),minBytesPerSecond))
+		{
+			println("File Server not available: " + limiter.getName() + " bandwidth limit is below " + minDataRate.name + " (" + minBytesPerSecond + " bytes/s), throttled transfers would time out");
+			exit(1);
+		}
+	}
+
+	private static boolean isBelow(long bytesPerSecond, long minBytesPerSecond)
+	{
+		return bytesPerSecond > 0 && bytesPerSecond < minBytesPerSecond;
+	}
+
+	private long getLongProperty(ServerProperties property)
+	{
+		val value = properties.getProperty(property.name);
+		return StringUtils.isEmpty(value) ? 0 : Long.parseLong(value);
+	}
+
+	private GzipHandler createGzipHandler()
+	{
+		val result = new RangeAwareGzipHandler();
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_GZIP_MIN_SIZE.name)))
+			result.setMinGzipSize(Integer.parseInt(properties.getProperty(ServerProperties.SERVER_GZIP_MIN_SIZE.name)));
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_GZIP_MIME_TYPES.name)))
+			result.setIncludedMimeTypes(StringUtils.stripAll(StringUtils.split(properties.getProperty(ServerProperties.SERVER_GZIP_MIME_TYPES.name),',')));
 		return result;
 	}
 
@@ -137,6 +400,7 @@ public class FileServer implements Config, SystemInterface
 				sslContextFactory.setIncludeProtocols(StringUtils.stripAll(StringUtils.split(properties.getProperty(ServerProperties.SERVER_PROTOCOLS.name),',')));
 			if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_CIPHER_SUITES.name)))
 				sslContextFactory.setIncludeCipherSuites(StringUtils.stripAll(StringUtils.split(properties.getProperty(ServerProperties.SERVER_CIPHER_SUITES.name),',')));
+			initSslProvider(sslContextFactory);
 			sslContextFactory.setKeyStoreType(properties.getProperty(ServerProperties.KEYSTORE_TYPE.name));
 			sslContextFactory.setKeyStoreResource(keyStore);
 			sslContextFactory.setKeyStorePassword(properties.getProperty(ServerProperties.KEYSTORE_PASSWORD.name));
@@ -148,6 +412,30 @@ public class FileServer implements Config, SystemInterface
 		}
 	}
 
+	private void initSslProvider(SslContextFactory.Server sslContextFactory)
+	{
+		val providerClass = properties.getProperty(ServerProperties.SERVER_SSL_PROVIDER_CLASS.name);
+		if (!StringUtils.isEmpty(providerClass))
+		{
+			try
+			{
+				sslContextFactory.setProvider(SecurityProviders.add(providerClass));
+			}
+			catch (ClassNotFoundException e)
+			{
+				println("SSL provider " + providerClass + " not found!");
+				exit(1);
+			}
+			catch (ReflectiveOperationException | ClassCastException e)
+			{
+				println("SSL provider " + providerClass + " could not be registered: " + e.getMessage());
+				exit(1);
+			}
+		}
+		if (!StringUtils.isEmpty(properties.getProperty(ServerProperties.SERVER_SSL_PROVIDER.name)))
+			sslContextFactory.setProvider(properties.getProperty(ServerProperties.SERVER_SSL_PROVIDER.name));
+	}
+
 	private void addFileServerTrustStore(SslContextFactory.Server sslContextFactory) throws IOException
 	{
 		val trustStore = getResource(properties.getProperty(ServerProperties.TRUSTSTORE_PATH.name));
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.QuotedQualityCSV;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+
+import lombok.AccessLevel;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+public class RangeAwareGzipHandler extends GzipHandler
+{
+	private static final String GZIP = "gzip";
+	private static final String ANY = "*";
+	private static final String NO_RANGES = "none";
+
+	@Override
+	public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+	{
+		// byte ranges always refer to the identity representation
+		if (request.getHeader(HttpHeader.RANGE.asString()) != null)
+			getHandler().handle(target,baseRequest,request,response);
+		// a (partially) saved gzip representation cannot be resumed, so do not advertise ranges for it
+		else if (isGzipable(request))
+			super.handle(target,baseRequest,request,new NoRangesResponse(response));
+		else
+			super.handle(target,baseRequest,request,response);
+	}
+
+	private boolean isGzipable(HttpServletRequest request)
+	{
+		return Arrays.asList(getIncludedMethods()).contains(request.getMethod()) && acceptsGzip(request);
+	}
+
+	private static boolean acceptsGzip(HttpServletRequest request)
+	{
+		val acceptEncoding = new QuotedQualityCSV();
+		for (val value : Collections.list(request.getHeaders(HttpHeader.ACCEPT_ENCODING.asString())))
+			acceptEncoding.addValue(value);
+		// values with q=0 are dropped by QuotedQualityCSV
+		return acceptEncoding.getValues().stream().anyMatch(v -> GZIP.equalsIgnoreCase(v) || ANY.equals(v));
+	}
+
+	private boolean isCompressed(String contentType, long contentLength)
+	{
+		return contentType != null
+				&& isMimeTypeGzipable(MimeTypes.getContentTypeWithoutCharset(contentType))
+				&& (contentLength < 0 || contentLength >= getMinGzipSize());
+	}
+
+	@FieldDefaults(level = AccessLevel.PRIVATE)
+	private class NoRangesResponse extends HttpServletResponseWrapper
+	{
+		String acceptRanges;
+		long contentLength = -1;
+
+		public NoRangesResponse(HttpServletResponse response)
+		{
+			super(response);
+		}
+
+		@Override
+		public void setHeader(String name, String value)
+		{
+			if (HttpHeader.ACCEPT_RANGES.is(name))
+				setAcceptRanges(value);
+			else
+			{
+				if (HttpHeader.CONTENT_LENGTH.is(name))
+					contentLength = value == null ? -1 : Long.parseLong(value);
+				super.setHeader(name,value);
+				updateAcceptRanges();
+			}
+		}
+
+		@Override
+		public void addHeader(String name, String value)
+		{
+			if (HttpHeader.ACCEPT_RANGES.is(name))
+				setAcceptRanges(value);
+			else
+			{
+				if (HttpHeader.CONTENT_LENGTH.is(name))
+					contentLength = Long.parseLong(value);
+				super.addHeader(name,value);
+				updateAcceptRanges();
+			}
+		}
+
+		@Override
+		public void setContentType(String type)
+		{
+			super.setContentType(type);
+			updateAcceptRanges();
+		}
+
+		@Override
+		public void setContentLength(int len)
+		{
+			setContentLengthLong(len);
+		}
+
+		@Override
+		public void setContentLengthLong(long len)
+		{
+			contentLength = len;
+			super.setContentLengthLong(len);
+			updateAcceptRanges();
+		}
+
+		private void setAcceptRanges(String value)
+		{
+			acceptRanges = value;
+			updateAcceptRanges();
+		}
+
+		// the servlet may set Accept-Ranges before or after the content type and length, so re-evaluate on every change
+		private void updateAcceptRanges()
+		{
+			if (acceptRanges != null)
+				super.setHeader(HttpHeader.ACCEPT_RANGES.asString(),isCompressed(getContentType(),contentLength) ? NO_RANGES : acceptRanges);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import lombok.AccessLevel;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RequestTrace
+{
+	public enum Phase
+	{
+		// connection and TLS setup, only for the first request on an HTTP/1.x connection
+		CONNECTION,
+		// wait between request parsing and dispatch to a thread
+		DISPATCH,
+		// ClientCertificateManagerFilter only, the certificate to user lookup is done by the servlet
+		CERTIFICATE,
+		// admission control wait
+		ADMISSION,
+		// download or upload servlet, including the user lookup
+		SERVLET;
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+	private static final int RING_SIZE = 16;
+	// the ring lives as long as the thread, so it only avoids allocation and keeps history on pooled threads, not on virtual threads
+	private static final ThreadLocal<RequestTrace> TRACES = ThreadLocal.withInitial(RequestTrace::new);
+	final long[] startTimes = new long[RING_SIZE];
+	final long[] durations = new long[RING_SIZE * PHASES.length];
+	int current = RING_SIZE - 1;
+	long lastMark;
+	Phase lastPhase;
+
+	public static RequestTrace get()
+	{
+		return TRACES.get();
+	}
+
+	public void begin(long startTime, long connectionTime, long dispatchTime)
+	{
+		current = (current + 1) % RING_SIZE;
+		startTimes[current] = startTime;
+		Arrays.fill(durations,current * PHASES.length,(current + 1) * PHASES.length,0);
+		durations[index(current,Phase.CONNECTION)] = TimeUnit.MILLISECONDS.toNanos(connectionTime);
+		durations[index(current,Phase.DISPATCH)] = TimeUnit.MILLISECONDS.toNanos(dispatchTime);
+		lastMark = System.nanoTime();
+		lastPhase = Phase.DISPATCH;
+	}
+
+	public void mark(Phase phase)
+	{
+		val now = System.nanoTime();
+		durations[index(current,phase)] += now - lastMark;
+		lastMark = now;
+		lastPhase = phase;
+	}
+
+	public Phase getNextPhase()
+	{
+		return PHASES[Math.min(lastPhase.ordinal() + 1,PHASES.length - 1)];
+	}
+
+	public long getStartTime()
+	{
+		return startTimes[current];
+	}
+
+	public long getDuration(Phase phase)
+	{
+		return durations[index(current,phase)];
+	}
+
+	public long getTotal()
+	{
+		return getTotal(current);
+	}
+
+	public void appendTo(StringBuilder builder)
+	{
+		builder.append('[');
+		for (val phase : PHASES)
+			appendSeparator(builder).append(phase.name().toLowerCase()).append('=').append(toMillis(getDuration(phase))).append("ms");
+		builder.append("] recent=[");
+		for (int i = 1; i < RING_SIZE; i++)
+		{
+			val slot = (current + RING_SIZE - i) % RING_SIZE;
+			if (startTimes[slot] != 0)
+				appendSeparator(builder).append(toMillis(getTotal(slot))).append("ms");
+		}
+		builder.append(']');
+	}
+
+	private static StringBuilder appendSeparator(StringBuilder builder)
+	{
+		return builder.charAt(builder.length() - 1) == '[' ? builder : builder.append(' ');
+	}
+
+	private long getTotal(int slot)
+	{
+		long result = 0;
+		for (val phase : PHASES)
+			result += durations[index(slot,phase)];
+		return result;
+	}
+
+	private static int index(int slot, Phase phase)
+	{
+		return slot * PHASES.length + phase.ordinal();
+	}
+
+	private static long toMillis(long nanos)
+	{
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+}
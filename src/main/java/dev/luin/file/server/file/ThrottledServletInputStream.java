@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.io.IOException;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@AllArgsConstructor
+public class ThrottledServletInputStream extends ServletInputStream
+{
+	ServletInputStream inputStream;
+	BandwidthLimiter limiter;
+	String client;
+
+	@Override
+	public int read() throws IOException
+	{
+		val result = inputStream.read();
+		if (result >= 0)
+			limiter.throttle(client,1);
+		return result;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		val result = inputStream.read(b,off,len);
+		if (result > 0)
+			limiter.throttle(client,result);
+		return result;
+	}
+
+	@Override
+	public boolean isFinished()
+	{
+		return inputStream.isFinished();
+	}
+
+	@Override
+	public boolean isReady()
+	{
+		return inputStream.isReady();
+	}
+
+	@Override
+	public void setReadListener(ReadListener readListener)
+	{
+		inputStream.setReadListener(readListener);
+	}
+
+	@Override
+	public int available() throws IOException
+	{
+		return inputStream.available();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		inputStream.close();
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@AllArgsConstructor
+public class ThrottledServletOutputStream extends ServletOutputStream
+{
+	ServletOutputStream outputStream;
+	BandwidthLimiter limiter;
+	String client;
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		limiter.throttle(client,1);
+		outputStream.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if (len > 0)
+			limiter.throttle(client,len);
+		outputStream.write(b,off,len);
+	}
+
+	@Override
+	public boolean isReady()
+	{
+		return outputStream.isReady();
+	}
+
+	@Override
+	public void setWriteListener(WriteListener writeListener)
+	{
+		outputStream.setWriteListener(writeListener);
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		outputStream.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		outputStream.close();
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import lombok.AccessLevel;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TokenBucket
+{
+	private static final double NANOS_PER_SECOND = 1000000000.0;
+	long bytesPerSecond;
+	double nanosPerByte;
+	long burstNanos;
+	LongSupplier clock;
+	AtomicLong theoreticalArrivalTime;
+
+	public TokenBucket(long bytesPerSecond)
+	{
+		this(bytesPerSecond,System::nanoTime);
+	}
+
+	TokenBucket(long bytesPerSecond, LongSupplier clock)
+	{
+		this.bytesPerSecond = bytesPerSecond;
+		this.nanosPerByte = NANOS_PER_SECOND / bytesPerSecond;
+		this.burstNanos = (long)NANOS_PER_SECOND;
+		this.clock = clock;
+		this.theoreticalArrivalTime = new AtomicLong(clock.getAsLong());
+	}
+
+	public long getBytesPerSecond()
+	{
+		return bytesPerSecond;
+	}
+
+	public long acquire(int bytes)
+	{
+		val cost = (long)(bytes * nanosPerByte);
+		while (true)
+		{
+			val now = clock.getAsLong();
+			val tat = theoreticalArrivalTime.get();
+			val next = (tat - now > 0 ? tat : now) + cost;
+			if (theoreticalArrivalTime.compareAndSet(tat,next))
+				return Math.max(0,next - now - burstNanos);
+		}
+	}
+
+	public boolean isIdle()
+	{
+		// a bucket has fully refilled once its theoretical arrival time has passed; replacing it by a new one is then indistinguishable
+		return clock.getAsLong() - theoreticalArrivalTime.get() > burstNanos;
+	}
+}
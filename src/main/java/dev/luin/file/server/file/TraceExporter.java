@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+
+import dev.luin.file.server.file.RequestTrace.Phase;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import lombok.AccessLevel;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TraceExporter extends AbstractLifeCycle
+{
+	private static final AttributeKey<String> SERVICE_NAME = AttributeKey.stringKey("service.name");
+	private static final AttributeKey<String> HTTP_METHOD = AttributeKey.stringKey("http.method");
+	private static final AttributeKey<String> HTTP_TARGET = AttributeKey.stringKey("http.target");
+	private static final AttributeKey<Long> HTTP_STATUS_CODE = AttributeKey.longKey("http.status_code");
+	SdkTracerProvider tracerProvider;
+	Tracer tracer;
+
+	public TraceExporter(String endpoint)
+	{
+		tracerProvider = SdkTracerProvider.builder()
+				.setResource(Resource.getDefault().merge(Resource.create(Attributes.of(SERVICE_NAME,"file-server"))))
+				.addSpanProcessor(BatchSpanProcessor.builder(OtlpGrpcSpanExporter.builder().setEndpoint(endpoint).build()).build())
+				.build();
+		tracer = tracerProvider.get(TraceExporter.class.getName());
+	}
+
+	public void export(HttpServletRequest request, int status, RequestTrace trace)
+	{
+		long time = TimeUnit.MILLISECONDS.toNanos(trace.getStartTime()) - trace.getDuration(Phase.CONNECTION) - trace.getDuration(Phase.DISPATCH);
+		val span = tracer.spanBuilder(request.getMethod() + " " + request.getServletPath())
+				.setSpanKind(SpanKind.SERVER)
+				.setStartTimestamp(time,TimeUnit.NANOSECONDS)
+				.setAttribute(HTTP_METHOD,request.getMethod())
+				.setAttribute(HTTP_TARGET,request.getRequestURI())
+				.setAttribute(HTTP_STATUS_CODE,(long)status)
+				.startSpan();
+		for (val phase : Phase.values())
+		{
+			time += trace.getDuration(phase);
+			span.addEvent(phase.name().toLowerCase(),time,TimeUnit.NANOSECONDS);
+		}
+		span.end(time,TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	protected void doStop() throws Exception
+	{
+		tracerProvider.shutdown().join(10,TimeUnit.SECONDS);
+		super.doStop();
+	}
+}
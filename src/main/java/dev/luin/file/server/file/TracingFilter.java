@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.HttpChannelOverHttp;
+import org.eclipse.jetty.server.Request;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@AllArgsConstructor
+public class TracingFilter implements Filter
+{
+	long slowRequestThreshold;
+	TraceExporter traceExporter;
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException
+	{
+		// Do nothing
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+	{
+		val trace = RequestTrace.get();
+		val baseRequest = Request.getBaseRequest(request);
+		val now = System.currentTimeMillis();
+		if (baseRequest == null)
+			trace.begin(now,0,0);
+		else
+			trace.begin(now,getConnectionTime(baseRequest),now - baseRequest.getTimeStamp());
+		try
+		{
+			chain.doFilter(request,response);
+		}
+		finally
+		{
+			// a filter that rejects the request does not call the rest of the chain, so its time belongs to the phase after the last one marked
+			trace.mark(trace.getNextPhase());
+			if (trace.getTotal() >= TimeUnit.MILLISECONDS.toNanos(slowRequestThreshold))
+				onSlowRequest((HttpServletRequest)request,(HttpServletResponse)response,trace);
+		}
+	}
+
+	private static long getConnectionTime(Request request)
+	{
+		// only the first request on an HTTP/1.x connection waited for the connection (and TLS handshake) to be set up
+		val channel = request.getHttpChannel();
+		return channel instanceof HttpChannelOverHttp && channel.getRequests() == 1
+				? Math.max(0,request.getTimeStamp() - channel.getEndPoint().getCreatedTimeStamp())
+				: 0;
+	}
+
+	private void onSlowRequest(HttpServletRequest request, HttpServletResponse response, RequestTrace trace)
+	{
+		if (log.isWarnEnabled())
+		{
+			val builder = new StringBuilder("Slow request ")
+					.append(request.getMethod()).append(' ').append(request.getRequestURI())
+					.append(" status=").append(response.getStatus())
+					.append(" time=").append(TimeUnit.NANOSECONDS.toMillis(trace.getTotal())).append("ms ");
+			trace.appendTo(builder);
+			log.warn(builder.toString());
+		}
+		if (traceExporter != null)
+			traceExporter.export(request,response.getStatus(),trace);
+	}
+
+	@Override
+	public void destroy()
+	{
+		// Do nothing
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.web;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.cxf.Bus;
+import org.apache.cxf.ext.logging.AbstractLoggingInterceptor;
+import org.apache.cxf.ext.logging.LoggingInInterceptor;
+import org.apache.cxf.ext.logging.LoggingOutInterceptor;
+import org.apache.cxf.ext.logging.event.LogEvent;
+import org.apache.cxf.feature.AbstractFeature;
+import org.apache.cxf.interceptor.AttachmentInInterceptor;
+import org.apache.cxf.interceptor.AttachmentOutInterceptor;
+import org.apache.cxf.interceptor.InterceptorProvider;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@AllArgsConstructor
+public class ExchangeLoggingFeature extends AbstractFeature
+{
+	private static final String START_TIME = ExchangeLoggingFeature.class.getName() + ".startTime";
+	private static final String REQUEST_SIZE = ExchangeLoggingFeature.class.getName() + ".requestSize";
+	private static final String RESPONSE_SIZE = ExchangeLoggingFeature.class.getName() + ".responseSize";
+	private static final Set<String> MASKED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+	static
+	{
+		MASKED_HEADERS.addAll(Arrays.asList("Authorization","Proxy-Authorization","Cookie","Set-Cookie"));
+	}
+	double sampleRate;
+	Map<String,Double> endpointSampleRates;
+	int bodyLimit;
+
+	@Override
+	protected void initializeProvider(InterceptorProvider provider, Bus bus)
+	{
+		provider.getInInterceptors().add(new ReceiveInterceptor());
+		provider.getOutInterceptors().add(new SendInterceptor());
+		provider.getOutInterceptors().add(new CompleteInterceptor());
+		provider.getOutFaultInterceptors().add(new SendInterceptor());
+		provider.getOutFaultInterceptors().add(new CompleteInterceptor());
+	}
+
+	private boolean isSampled(Message message)
+	{
+		val endpoint = message.getExchange().getEndpoint();
+		val rate = endpoint == null ? sampleRate : endpointSampleRates.getOrDefault(endpoint.getEndpointInfo().getAddress(),sampleRate);
+		return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+	}
+
+	private static boolean isSampled(Exchange exchange)
+	{
+		return exchange != null && exchange.containsKey(START_TIME);
+	}
+
+	private <T extends AbstractLoggingInterceptor> T configure(T interceptor)
+	{
+		interceptor.setLimit(bodyLimit);
+		interceptor.setLogBinary(false);
+		interceptor.setLogMultipart(false);
+		return interceptor;
+	}
+
+	private static void logBody(LogEvent event)
+	{
+		log.info("{} {} {}",event.getExchangeId(),event.getType(),event.getPayload());
+	}
+
+	private static Object getHeaders(Message message)
+	{
+		@SuppressWarnings("unchecked")
+		val headers = (Map<String,List<String>>)message.get(Message.PROTOCOL_HEADERS);
+		return headers == null ? null : headers.entrySet().stream()
+				.collect(Collectors.toMap(e -> e.getKey(),e -> MASKED_HEADERS.contains(e.getKey()) ? "***" : e.getValue()));
+	}
+
+	private static long getByteCount(Exchange exchange, String key)
+	{
+		val result = exchange.get(key);
+		if (result instanceof CountingInputStream)
+			return ((CountingInputStream)result).getByteCount();
+		if (result instanceof CountingOutputStream)
+			return ((CountingOutputStream)result).getByteCount();
+		return -1;
+	}
+
+	private class ReceiveInterceptor extends AbstractPhaseInterceptor<Message>
+	{
+		public ReceiveInterceptor()
+		{
+			super(Phase.RECEIVE);
+			// count the raw request, including MTOM attachments
+			addBefore(AttachmentInInterceptor.class.getName());
+		}
+
+		@Override
+		public void handleMessage(Message message)
+		{
+			if (log.isInfoEnabled() && isSampled(message))
+			{
+				val exchange = message.getExchange();
+				exchange.put(START_TIME,System.nanoTime());
+				val inputStream = message.getContent(InputStream.class);
+				if (inputStream != null)
+				{
+					val result = new CountingInputStream(inputStream);
+					message.setContent(InputStream.class,result);
+					exchange.put(REQUEST_SIZE,result);
+				}
+				if (bodyLimit > 0)
+					message.getInterceptorChain().add(configure(new LoggingInInterceptor(ExchangeLoggingFeature::logBody)));
+			}
+		}
+	}
+
+	private class SendInterceptor extends AbstractPhaseInterceptor<Message>
+	{
+		public SendInterceptor()
+		{
+			super(Phase.PRE_STREAM);
+			// count the raw response, including MTOM attachments
+			addBefore(AttachmentOutInterceptor.class.getName());
+		}
+
+		@Override
+		public void handleMessage(Message message)
+		{
+			val exchange = message.getExchange();
+			if (isSampled(exchange))
+			{
+				val outputStream = message.getContent(OutputStream.class);
+				if (outputStream != null)
+				{
+					val result = new CountingOutputStream(outputStream);
+					message.setContent(OutputStream.class,result);
+					exchange.put(RESPONSE_SIZE,result);
+				}
+				if (bodyLimit > 0)
+					message.getInterceptorChain().add(configure(new LoggingOutInterceptor(ExchangeLoggingFeature::logBody)));
+			}
+		}
+	}
+
+	private class CompleteInterceptor extends AbstractPhaseInterceptor<Message>
+	{
+		public CompleteInterceptor()
+		{
+			super(Phase.SETUP_ENDING);
+		}
+
+		@Override
+		public void handleMessage(Message message)
+		{
+			val exchange = message.getExchange();
+			if (isSampled(exchange))
+			{
+				val request = exchange.getInMessage();
+				val time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - (Long)exchange.get(START_TIME));
+				log.info("{} {} status={} requestSize={} responseSize={} time={}ms headers={}",
+						request.get(Message.HTTP_REQUEST_METHOD),
+						request.get(Message.REQUEST_URI),
+						message.get(Message.RESPONSE_CODE),
+						getByteCount(exchange,REQUEST_SIZE),
+						getByteCount(exchange,RESPONSE_SIZE),
+						time,
+						getHeaders(request));
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.web;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import dev.luin.file.server.Config;
+import dev.luin.file.server.SslSessionStatistics;
+import dev.luin.file.server.SystemInterface;
+import dev.luin.file.server.file.FileServer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jetty.JettyConnectionMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PrometheusMetrics implements Config, SystemInterface
+{
+	@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+	@AllArgsConstructor
+	@Getter
+	private enum Option
+	{
+		METRICS("metrics");
+
+		String name;
+	}
+
+	private static final String METRICS_PATH = "/metrics";
+	PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+	public static String getMetricsOption()
+	{
+		return Option.METRICS.name;
+	}
+
+	public static boolean isEnabled(CommandLine cmd)
+	{
+		return cmd.hasOption(Option.METRICS.name);
+	}
+
+	public static Options addOptions(final Options options)
+	{
+		options.addOption(Option.METRICS.name,false,"expose Prometheus metrics on the health service (requires -health)");
+		return options;
+	}
+
+	public void init(final Server server, final ServletContextHandler contextHandler, final ConfigurableApplicationContext context, final FileServer fileServer, final WebServer webServer)
+	{
+		JettyConnectionMetrics.addToAllConnectors(server,registry);
+		val requestMetrics = new RequestMetrics(registry,fileServer.getServerConnectorName(),fileServer.getDownloadPath(),fileServer.getUploadPath(),webServer.getWebConnectorName(),webServer.getContextSoapPath());
+		for (val connector : server.getConnectors())
+		{
+			connector.addBean(requestMetrics);
+			bindSslSessionStatistics(connector);
+		}
+		context.addApplicationListener(this::onApplicationEvent);
+		contextHandler.addServlet(new ServletHolder(new MetricsServlet(registry)),METRICS_PATH);
+		println("Metrics service configured on health service path " + METRICS_PATH);
+	}
+
+	private void bindSslSessionStatistics(final Connector connector)
+	{
+		val statistics = connector.getBean(SslSessionStatistics.class);
+		if (statistics != null)
+		{
+			val tags = Tags.of("connector",connector.getName());
+			FunctionCounter.builder("tls.handshakes",statistics,SslSessionStatistics::getHandshakes).tags(tags).register(registry);
+			FunctionCounter.builder("tls.handshakes.resumed",statistics,SslSessionStatistics::getResumed).tags(tags).register(registry);
+			FunctionCounter.builder("tls.handshakes.failed",statistics,SslSessionStatistics::getFailed).tags(tags).register(registry);
+			Gauge.builder("tls.sessions.resumption.rate",statistics,SslSessionStatistics::getResumptionRate).tags(tags).register(registry);
+			FunctionTimer.builder("tls.handshake.time",statistics,SslSessionStatistics::getHandshakes,SslSessionStatistics::getHandshakeTime,TimeUnit.MILLISECONDS).tags(tags).register(registry);
+		}
+	}
+
+	private void onApplicationEvent(ApplicationEvent event)
+	{
+		if (event instanceof ContextRefreshedEvent)
+			((ContextRefreshedEvent)event).getApplicationContext().getBeansOfType(DataSource.class).values().forEach(this::bindDataSource);
+	}
+
+	private void bindDataSource(final DataSource dataSource)
+	{
+		try
+		{
+			if (dataSource.isWrapperFor(HikariDataSource.class))
+			{
+				val hikariDataSource = dataSource.unwrap(HikariDataSource.class);
+				val pool = hikariDataSource.getHikariPoolMXBean();
+				if (pool != null)
+				{
+					val tags = Tags.of("pool",hikariDataSource.getPoolName());
+					Gauge.builder("hikaricp.connections.active",pool,HikariPoolMXBean::getActiveConnections).tags(tags).register(registry);
+					Gauge.builder("hikaricp.connections.idle",pool,HikariPoolMXBean::getIdleConnections).tags(tags).register(registry);
+					Gauge.builder("hikaricp.connections",pool,HikariPoolMXBean::getTotalConnections).tags(tags).register(registry);
+					Gauge.builder("hikaricp.connections.pending",pool,HikariPoolMXBean::getThreadsAwaitingConnection).tags(tags).register(registry);
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			println("Unable to bind DataSource metrics: " + e.getMessage());
+		}
+	}
+}
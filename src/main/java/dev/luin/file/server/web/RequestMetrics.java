@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.web;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RequestMetrics implements HttpChannel.Listener
+{
+	private static final String DOWNLOAD = "download";
+	private static final String UPLOAD = "upload";
+	private static final String SOAP = "soap";
+	private static final String REST = "rest";
+	private static final String GB = "gb";
+	private static final String OTHER = "other";
+	private static final String REST_PATH = "/rest/v1";
+	private static final String GB_PATH = "/gb";
+	private static final String[] ENDPOINTS = {DOWNLOAD,UPLOAD,SOAP,REST,GB,OTHER};
+	private static final int MAX_STATUS = 600;
+	MeterRegistry registry;
+	String fileConnectorName;
+	String downloadPath;
+	String uploadPath;
+	String webConnectorName;
+	String soapPath;
+	String restPath;
+	String gbSoapPath;
+	String gbRestPath;
+	Map<String,AtomicInteger> activeRequests = new HashMap<>();
+	Map<String,AtomicReferenceArray<Timer>> requestTimers = new HashMap<>();
+
+	public RequestMetrics(MeterRegistry registry, String fileConnectorName, String downloadPath, String uploadPath, String webConnectorName, String soapPath)
+	{
+		this.registry = registry;
+		this.fileConnectorName = fileConnectorName;
+		this.downloadPath = downloadPath;
+		this.uploadPath = uploadPath;
+		this.webConnectorName = webConnectorName;
+		this.soapPath = soapPath;
+		this.restPath = soapPath + REST_PATH;
+		this.gbSoapPath = soapPath + GB_PATH;
+		this.gbRestPath = restPath + GB_PATH;
+		activeRequests.put(DOWNLOAD,createActiveRequestsGauge(DOWNLOAD));
+		activeRequests.put(UPLOAD,createActiveRequestsGauge(UPLOAD));
+		for (val endpoint : ENDPOINTS)
+			requestTimers.put(endpoint,new AtomicReferenceArray<>(MAX_STATUS));
+	}
+
+	// counted before any filter runs, so this includes requests that are rejected by certificate or admission checks
+	private AtomicInteger createActiveRequestsGauge(String endpoint)
+	{
+		val result = new AtomicInteger();
+		Gauge.builder("fileserver.requests.active",result,AtomicInteger::get)
+				.description("number of requests in flight")
+				.tag("endpoint",endpoint)
+				.register(registry);
+		return result;
+	}
+
+	@Override
+	public void onRequestBegin(Request request)
+	{
+		val activeRequest = activeRequests.get(getEndpoint(request));
+		if (activeRequest != null)
+			activeRequest.incrementAndGet();
+	}
+
+	@Override
+	public void onComplete(Request request)
+	{
+		val endpoint = getEndpoint(request);
+		val activeRequest = activeRequests.get(endpoint);
+		if (activeRequest != null)
+			activeRequest.decrementAndGet();
+		getTimer(endpoint,request.getResponse().getStatus()).record(System.currentTimeMillis() - request.getTimeStamp(),TimeUnit.MILLISECONDS);
+	}
+
+	private Timer getTimer(String endpoint, int status)
+	{
+		val timers = requestTimers.get(endpoint);
+		val index = status > 0 && status < MAX_STATUS ? status : 0;
+		val result = timers.get(index);
+		return result != null ? result : createTimer(timers,endpoint,index);
+	}
+
+	private Timer createTimer(AtomicReferenceArray<Timer> timers, String endpoint, int status)
+	{
+		// the registry returns the same timer for the same id, so concurrent creation is harmless
+		val result = Timer.builder("fileserver.requests")
+				.description("request latency per endpoint")
+				.tag("endpoint",endpoint)
+				.tag("status",Integer.toString(status))
+				.publishPercentileHistogram()
+				.maximumExpectedValue(Duration.ofMinutes(10))
+				.register(registry);
+		timers.set(status,result);
+		return result;
+	}
+
+	private String getEndpoint(Request request)
+	{
+		return getEndpoint(request.getHttpChannel().getConnector().getName(),request.getRequestURI());
+	}
+
+	String getEndpoint(String connector, String uri)
+	{
+		if (uri == null)
+			return OTHER;
+		else if (fileConnectorName.equals(connector))
+			return getFileEndpoint(uri);
+		else if (webConnectorName.equals(connector))
+			return getWebEndpoint(uri);
+		else
+			return OTHER;
+	}
+
+	private String getFileEndpoint(String uri)
+	{
+		if (isUnder(uri,downloadPath))
+			return DOWNLOAD;
+		else if (isUnder(uri,uploadPath))
+			return UPLOAD;
+		else
+			return OTHER;
+	}
+
+	private String getWebEndpoint(String uri)
+	{
+		if (isUnder(uri,gbSoapPath) || isUnder(uri,gbRestPath))
+			return GB;
+		else if (isUnder(uri,restPath))
+			return REST;
+		else if (isUnder(uri,soapPath))
+			return SOAP;
+		else
+			return OTHER;
+	}
+
+	private static boolean isUnder(String uri, String path)
+	{
+		return uri.startsWith(path) && (uri.length() == path.length() || uri.charAt(path.length()) == '/');
+	}
+}
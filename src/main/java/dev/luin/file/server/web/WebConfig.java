@@ -17,6 +17,9 @@ package dev.luin.file.server.web;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.xml.namespace.QName;
 import javax.xml.ws.Endpoint;
@@ -30,17 +33,20 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.cxf.Bus;
+import org.apache.cxf.attachment.AttachmentDeserializer;
 import org.apache.cxf.binding.BindingFactoryManager;
 import org.apache.cxf.bus.spring.SpringBus;
 import org.apache.cxf.endpoint.Server;
-import org.apache.cxf.ext.logging.LoggingFeature;
 import org.apache.cxf.jaxrs.JAXRSBindingFactory;
 import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
 import org.apache.cxf.jaxrs.lifecycle.SingletonResourceProvider;
 import org.apache.cxf.jaxrs.openapi.OpenApiFeature;
 import org.apache.cxf.jaxws.EndpointImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -60,6 +66,18 @@ public class WebConfig
 	UserService userService;
 	@Autowired
 	FileService fileService;
+	@Value("${attachment.memoryThreshold}")
+	String attachmentMemoryThreshold;
+	@Value("${attachment.directory}")
+	String attachmentDirectory;
+	@Value("${attachment.maxSize}")
+	String attachmentMaxSize;
+	@Value("${exchangeLogging.sampleRate}")
+	String exchangeLoggingSampleRate;
+	@Value("${exchangeLogging.sampleRates}")
+	String exchangeLoggingSampleRates;
+	@Value("${exchangeLogging.bodyLimit}")
+	String exchangeLoggingBodyLimit;
 
 	@Bean
 	public Endpoint userServiceEndpoint()
@@ -70,7 +88,7 @@ public class WebConfig
 	@Bean
 	public Endpoint fileServiceEndpoint()
 	{
-		val result = publishEndpoint(fileService,"/file","http://luin.dev/file/server/1.0","FileService","FileServicePort");
+		val result = publishEndpoint(fileService,"/file","http://luin.dev/file/server/1.0","FileService","FileServicePort",createAttachmentProperties());
 		((SOAPBinding)result.getBinding()).setMTOMEnabled(true);
 		return result;
 	}
@@ -83,16 +101,50 @@ public class WebConfig
 		return result;
 	}
 
-	private LoggingFeature createLoggingFeature()
+	private ExchangeLoggingFeature createLoggingFeature()
 	{
-		val result = new LoggingFeature();
-		result.setPrettyLogging(true);
+		return new ExchangeLoggingFeature(
+				Double.parseDouble(exchangeLoggingSampleRate),
+				parseSampleRates(exchangeLoggingSampleRates),
+				Integer.parseInt(exchangeLoggingBodyLimit));
+	}
+
+	private Map<String,Double> parseSampleRates(String sampleRates)
+	{
+		return Arrays.stream(StringUtils.split(StringUtils.defaultString(sampleRates),','))
+				.map(this::parseSampleRate)
+				.collect(Collectors.toMap(r -> r[0],r -> Double.parseDouble(r[1])));
+	}
+
+	private String[] parseSampleRate(String sampleRate)
+	{
+		val result = StringUtils.stripAll(StringUtils.split(sampleRate,'='));
+		if (result.length != 2 || !NumberUtils.isCreatable(result[1]))
+			throw new IllegalArgumentException("Invalid exchangeLogging.sampleRates entry '" + sampleRate + "', expected <address>=<rate>");
+		return result;
+	}
+
+	protected Map<String,Object> createAttachmentProperties()
+	{
+		val result = new HashMap<String,Object>();
+		if (!StringUtils.isEmpty(attachmentMemoryThreshold))
+			result.put(AttachmentDeserializer.ATTACHMENT_MEMORY_THRESHOLD,Long.parseLong(attachmentMemoryThreshold));
+		if (!StringUtils.isEmpty(attachmentDirectory))
+			result.put(AttachmentDeserializer.ATTACHMENT_DIRECTORY,attachmentDirectory);
+		if (!StringUtils.isEmpty(attachmentMaxSize))
+			result.put(AttachmentDeserializer.ATTACHMENT_MAX_SIZE,Long.parseLong(attachmentMaxSize));
 		return result;
 	}
 
 	protected Endpoint publishEndpoint(Object service, String address, String namespaceUri, String serviceName, String endpointName)
+	{
+		return publishEndpoint(service,address,namespaceUri,serviceName,endpointName,Collections.emptyMap());
+	}
+
+	protected Endpoint publishEndpoint(Object service, String address, String namespaceUri, String serviceName, String endpointName, Map<String,Object> properties)
 	{
 		val result = new EndpointImpl(springBus(),service);
+		result.setProperties(new HashMap<>(properties));
 		result.setAddress(address);
 		result.setServiceName(new QName(namespaceUri,serviceName));
 		result.setEndpointName(new QName(namespaceUri,endpointName));
@@ -109,13 +161,19 @@ public class WebConfig
 	@Bean
 	public Server createFileJAXRSServer()
 	{
-		return createJAXRSServer(FileServiceImpl.class,fileService,"/files");
+		return createJAXRSServer(FileServiceImpl.class,fileService,"/files",createAttachmentProperties());
 	}
 
 	protected Server createJAXRSServer(Class<?> resourceClass, Object resourceObject, String path)
+	{
+		return createJAXRSServer(resourceClass,resourceObject,path,Collections.emptyMap());
+	}
+
+	protected Server createJAXRSServer(Class<?> resourceClass, Object resourceObject, String path, Map<String,Object> properties)
 	{
 		val sf = new JAXRSServerFactoryBean();
 		sf.setBus(springBus());
+		sf.setProperties(new HashMap<>(properties));
 		sf.setAddress("/rest/v1" + path);
 		sf.setProvider(createJacksonJsonProvider());
 		sf.setFeatures(Arrays.asList(createOpenApiFeature()));
@@ -20,6 +20,12 @@ import java.io.IOException;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.ConnectionLimit;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
@@ -28,6 +34,8 @@ import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 
 import dev.luin.file.server.Config;
+import dev.luin.file.server.SecurityProviders;
+import dev.luin.file.server.SslSessionStatistics;
 import dev.luin.file.server.SystemInterface;
 import dev.luin.file.server.core.KeyStoreManager.KeyStoreType;
 import lombok.AccessLevel;
@@ -51,6 +59,8 @@ public class WebServer implements Config, SystemInterface
 		SSL("ssl"),
 		PROTOCOLS("protocols"),
 		CIPHER_SUITES("cipherSuites"),
+		SSL_PROVIDER("sslProvider"),
+		SSL_PROVIDER_CLASS("sslProviderClass"),
 		KEY_STORE_TYPE("keyStoreType"),
 		KEY_STORE_PATH("keyStorePath"),
 		KEY_STORE_PASSWORD("keyStorePassword"),
@@ -58,7 +68,13 @@ public class WebServer implements Config, SystemInterface
 		TRUST_STORE_TYPE("trustStoreType"),
 		TRUST_STORE_PATH("trustStorePath"),
 		TRUST_STORE_PASSWORD("trustStorePassword"),
-		CONNECTION_LIMIT("connectionLimit");
+		CONNECTION_LIMIT("connectionLimit"),
+		HTTP2("http2"),
+		HTTP2_MAX_CONCURRENT_STREAMS("http2MaxConcurrentStreams"),
+		HTTP2_INITIAL_STREAM_RECV_WINDOW("http2InitialStreamRecvWindow"),
+		HTTP2_INITIAL_SESSION_RECV_WINDOW("http2InitialSessionRecvWindow"),
+		SSL_SESSION_CACHE_SIZE("sslSessionCacheSize"),
+		SSL_SESSION_TIMEOUT("sslSessionTimeout");
 
 		String name;
 	}
@@ -91,6 +107,10 @@ public class WebServer implements Config, SystemInterface
 		options.addOption(Option.SSL.name,false,"enable SSL");
 		options.addOption(Option.PROTOCOLS.name,true,"set SSL Protocols [default: " + NONE + "]");
 		options.addOption(Option.CIPHER_SUITES.name,true,"set SSL CipherSuites [default: " + NONE + "]");
+		options.addOption(Option.SSL_PROVIDER.name,true,"set SSL (JSSE) provider [default: " + NONE + "]");
+		options.addOption(Option.SSL_PROVIDER_CLASS.name,true,"set SSL (JSSE) provider class to register [default: " + NONE + "]");
+		options.addOption(Option.SSL_SESSION_CACHE_SIZE.name,true,"set SSL session cache size [default: " + NONE + "]");
+		options.addOption(Option.SSL_SESSION_TIMEOUT.name,true,"set SSL session timeout in seconds [default: " + NONE + "]");
 		options.addOption(Option.KEY_STORE_TYPE.name,true,"set keystore type [default: " + DefaultValue.KEYSTORE_TYPE.value + "]");
 		options.addOption(Option.KEY_STORE_PATH.name,true,"set keystore path [default: " + DefaultValue.KEYSTORE_FILE.value + "]");
 		options.addOption(Option.KEY_STORE_PASSWORD.name,true,"set keystore password [default: " + DefaultValue.KEYSTORE_PASSWORD.value + "]");
@@ -99,6 +119,10 @@ public class WebServer implements Config, SystemInterface
 		options.addOption(Option.TRUST_STORE_PATH.name,true,"set truststore path [default: " + NONE + "]");
 		options.addOption(Option.TRUST_STORE_PASSWORD.name,true,"set truststore password [default: " + NONE + "]");
 		options.addOption(Option.CONNECTION_LIMIT.name,true,"set connection limit [default: " + NONE + "]");
+		options.addOption(Option.HTTP2.name,false,"enable HTTP/2 (h2 with SSL, h2c without SSL)");
+		options.addOption(Option.HTTP2_MAX_CONCURRENT_STREAMS.name,true,"set HTTP/2 max concurrent streams [default: " + NONE + "]");
+		options.addOption(Option.HTTP2_INITIAL_STREAM_RECV_WINDOW.name,true,"set HTTP/2 initial stream receive window [default: " + NONE + "]");
+		options.addOption(Option.HTTP2_INITIAL_SESSION_RECV_WINDOW.name,true,"set HTTP/2 initial session receive window [default: " + NONE + "]");
 		return options;
 	}
 
@@ -115,7 +139,8 @@ public class WebServer implements Config, SystemInterface
 	{
 		val httpConfig = new HttpConfiguration();
 		httpConfig.setSendServerVersion(false);
-		val result = new ServerConnector(server,sslContextFactory,new HttpConnectionFactory(httpConfig));
+		val result = new ServerConnector(server,sslContextFactory,createHttpsConnectionFactories(httpConfig));
+		result.addBean(new SslSessionStatistics());
 		result.setHost(cmd.getOptionValue(Option.HOST.name) == null ? DefaultValue.HOST.value : cmd.getOptionValue(Option.HOST.name));
 		result.setPort(Integer.parseInt(cmd.getOptionValue(Option.PORT.name) == null ? DefaultValue.SSL_PORT.value : cmd.getOptionValue(Option.PORT.name)));
 		result.setName(WEB_CONNECTOR_NAME);
@@ -135,9 +160,20 @@ public class WebServer implements Config, SystemInterface
 		if (cmd.hasOption(Option.CLIENT_AUTHENTICATION.name))
 			addTrustStore(result);
 		result.setExcludeCipherSuites();
+		initSslSessions(result);
+		if (isHttp2Enabled())
+			result.setCipherComparator(HTTP2Cipher.COMPARATOR);
 		return result;
 	}
 
+	private void initSslSessions(SslContextFactory.Server sslContextFactory)
+	{
+		if (cmd.hasOption(Option.SSL_SESSION_CACHE_SIZE.name))
+			sslContextFactory.setSslSessionCacheSize(Integer.parseInt(cmd.getOptionValue(Option.SSL_SESSION_CACHE_SIZE.name)));
+		if (cmd.hasOption(Option.SSL_SESSION_TIMEOUT.name))
+			sslContextFactory.setSslSessionTimeout(Integer.parseInt(cmd.getOptionValue(Option.SSL_SESSION_TIMEOUT.name)));
+	}
+
 	private void addKeyStore(SslContextFactory sslContextFactory) throws IOException
 	{
 		val keyStoreType = cmd.getOptionValue(Option.KEY_STORE_TYPE.name, DefaultValue.KEYSTORE_TYPE.value);
@@ -153,6 +189,7 @@ public class WebServer implements Config, SystemInterface
 			val cipherSuites = cmd.getOptionValue(Option.CIPHER_SUITES.name);
 			if (!StringUtils.isEmpty(cipherSuites))
 				sslContextFactory.setIncludeCipherSuites(StringUtils.stripAll(StringUtils.split(cipherSuites,',')));
+			initSslProvider(sslContextFactory);
 			sslContextFactory.setKeyStoreType(keyStoreType);
 			sslContextFactory.setKeyStoreResource(keyStore);
 			sslContextFactory.setKeyStorePassword(keyStorePassword);
@@ -164,6 +201,30 @@ public class WebServer implements Config, SystemInterface
 		}
 	}
 
+	private void initSslProvider(SslContextFactory sslContextFactory)
+	{
+		val providerClass = cmd.getOptionValue(Option.SSL_PROVIDER_CLASS.name);
+		if (!StringUtils.isEmpty(providerClass))
+		{
+			try
+			{
+				sslContextFactory.setProvider(SecurityProviders.add(providerClass));
+			}
+			catch (ClassNotFoundException e)
+			{
+				println("SSL provider " + providerClass + " not found!");
+				exit(1);
+			}
+			catch (ReflectiveOperationException | ClassCastException e)
+			{
+				println("SSL provider " + providerClass + " could not be registered: " + e.getMessage());
+				exit(1);
+			}
+		}
+		if (cmd.hasOption(Option.SSL_PROVIDER.name))
+			sslContextFactory.setProvider(cmd.getOptionValue(Option.SSL_PROVIDER.name));
+	}
+
 	private void addTrustStore(SslContextFactory.Server sslContextFactory) throws IOException
 	{
 		val trustStoreType = cmd.getOptionValue(Option.TRUST_STORE_TYPE.name,DefaultValue.KEYSTORE_TYPE.value);
@@ -189,7 +250,7 @@ public class WebServer implements Config, SystemInterface
 	{
 		val httpConfig = new HttpConfiguration();
 		httpConfig.setSendServerVersion(false);
-		val result = new ServerConnector(server,new HttpConnectionFactory(httpConfig));
+		val result = new ServerConnector(server,createHttpConnectionFactories(httpConfig));
 		result.setHost(cmd.getOptionValue(Option.HOST.name) == null ? DefaultValue.HOST.value : cmd.getOptionValue(Option.HOST.name));
 		result.setPort(Integer.parseInt(cmd.getOptionValue(Option.PORT.name) == null ? DefaultValue.PORT.value : cmd.getOptionValue(Option.PORT.name)));
 		result.setName(WEB_CONNECTOR_NAME);
@@ -197,6 +258,39 @@ public class WebServer implements Config, SystemInterface
 		return result;
 	}
 
+	private ConnectionFactory[] createHttpsConnectionFactories(HttpConfiguration httpConfig)
+	{
+		val http = new HttpConnectionFactory(httpConfig);
+		if (isHttp2Enabled())
+		{
+			val http2 = createHttp2ConnectionFactory(new HTTP2ServerConnectionFactory(httpConfig));
+			val alpn = new ALPNServerConnectionFactory(http2.getProtocol(),http.getProtocol());
+			alpn.setDefaultProtocol(http.getProtocol());
+			return new ConnectionFactory[]{alpn,http2,http};
+		}
+		else
+			return new ConnectionFactory[]{http};
+	}
+
+	private ConnectionFactory[] createHttpConnectionFactories(HttpConfiguration httpConfig)
+	{
+		val http = new HttpConnectionFactory(httpConfig);
+		return isHttp2Enabled()
+				? new ConnectionFactory[]{http,createHttp2ConnectionFactory(new HTTP2CServerConnectionFactory(httpConfig))}
+				: new ConnectionFactory[]{http};
+	}
+
+	private AbstractHTTP2ServerConnectionFactory createHttp2ConnectionFactory(AbstractHTTP2ServerConnectionFactory factory)
+	{
+		if (cmd.hasOption(Option.HTTP2_MAX_CONCURRENT_STREAMS.name))
+			factory.setMaxConcurrentStreams(Integer.parseInt(cmd.getOptionValue(Option.HTTP2_MAX_CONCURRENT_STREAMS.name)));
+		if (cmd.hasOption(Option.HTTP2_INITIAL_STREAM_RECV_WINDOW.name))
+			factory.setInitialStreamRecvWindow(Integer.parseInt(cmd.getOptionValue(Option.HTTP2_INITIAL_STREAM_RECV_WINDOW.name)));
+		if (cmd.hasOption(Option.HTTP2_INITIAL_SESSION_RECV_WINDOW.name))
+			factory.setInitialSessionRecvWindow(Integer.parseInt(cmd.getOptionValue(Option.HTTP2_INITIAL_SESSION_RECV_WINDOW.name)));
+		return factory;
+	}
+
 	private void initConnectionLimit(Server server, final org.eclipse.jetty.server.ServerConnector connector)
 	{
 		if (cmd.hasOption(Option.CONNECTION_LIMIT.name))
@@ -208,6 +302,11 @@ public class WebServer implements Config, SystemInterface
 		return cmd.hasOption(Option.SSL.name);
 	}
 
+	public boolean isHttp2Enabled()
+	{
+		return cmd.hasOption(Option.HTTP2.name);
+	}
+
 	public boolean isClientAuthenticationEnabled()
 	{
 		return cmd.hasOption(Option.CLIENT_AUTHENTICATION.name);
@@ -218,6 +317,11 @@ public class WebServer implements Config, SystemInterface
 		return SOAP_PATH;
 	}
 
+	public String getContextSoapPath()
+	{
+		return StringUtils.removeEnd(getPath(cmd),"/") + SOAP_PATH;
+	}
+
 	public String getWebConnectorName()
 	{
 		return WEB_CONNECTOR_NAME;
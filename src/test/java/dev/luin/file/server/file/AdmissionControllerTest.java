@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import lombok.val;
+
+class AdmissionControllerTest
+{
+	private static final String CLIENT = "client";
+	private static final String OTHER_CLIENT = "other";
+
+	@Test
+	void admitsUpToLimitPerClient()
+	{
+		val controller = new AdmissionController("test",2,0);
+		assertTrue(controller.acquire(CLIENT));
+		assertTrue(controller.acquire(CLIENT));
+		assertTrue(controller.acquire(OTHER_CLIENT));
+		assertEquals(3,controller.getActive());
+		assertEquals(3,controller.getAdmitted());
+	}
+
+	@Test
+	void rejectsBeyondLimitWithoutQueueing()
+	{
+		val controller = new AdmissionController("test",1,0);
+		assertTrue(controller.acquire(CLIENT));
+		assertFalse(controller.acquire(CLIENT));
+		assertEquals(1,controller.getRejected());
+		assertEquals(0,controller.getQueued());
+	}
+
+	@Test
+	void admitsAgainAfterRelease()
+	{
+		val controller = new AdmissionController("test",1,0);
+		assertTrue(controller.acquire(CLIENT));
+		controller.release(CLIENT);
+		assertTrue(controller.acquire(CLIENT));
+	}
+
+	@Test
+	void queuedTransferTimesOut()
+	{
+		val controller = new AdmissionController("test",1,50);
+		assertTrue(controller.acquire(CLIENT));
+		val start = System.nanoTime();
+		assertFalse(controller.acquire(CLIENT));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+		assertEquals(1,controller.getQueued());
+		assertEquals(1,controller.getRejected());
+	}
+
+	@Test
+	void queuedTransferIsWokenOnRelease() throws Exception
+	{
+		val controller = new AdmissionController("test",1,TimeUnit.SECONDS.toMillis(30));
+		assertTrue(controller.acquire(CLIENT));
+		val queued = CompletableFuture.supplyAsync(() -> controller.acquire(CLIENT));
+		Thread.sleep(100);
+		assertFalse(queued.isDone());
+		controller.release(CLIENT);
+		assertTrue(queued.get(5,TimeUnit.SECONDS));
+		assertEquals(1,controller.getActive());
+	}
+
+	@Test
+	void idleClientIsRemoved()
+	{
+		val clock = new AtomicLong();
+		val controller = new AdmissionController("test",1,0,clock::get);
+		assertTrue(controller.acquire(CLIENT));
+		controller.release(CLIENT);
+		assertEquals(1,controller.getClients());
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+		assertTrue(controller.acquire(OTHER_CLIENT));
+		assertEquals(1,controller.getClients());
+		assertTrue(controller.acquire(CLIENT));
+		assertEquals(2,controller.getClients());
+	}
+
+	@Test
+	void activeClientIsNotRemoved()
+	{
+		val clock = new AtomicLong();
+		val controller = new AdmissionController("test",1,0,clock::get);
+		assertTrue(controller.acquire(CLIENT));
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+		assertTrue(controller.acquire(OTHER_CLIENT));
+		assertEquals(2,controller.getClients());
+		assertFalse(controller.acquire(CLIENT));
+	}
+}
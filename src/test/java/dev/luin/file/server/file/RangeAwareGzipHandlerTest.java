@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import lombok.val;
+
+class RangeAwareGzipHandlerTest
+{
+	private static final int CONTENT_SIZE = 4096;
+	Server server;
+	LocalConnector connector;
+
+	@BeforeEach
+	void start() throws Exception
+	{
+		server = new Server();
+		connector = new LocalConnector(server);
+		server.addConnector(connector);
+		val context = new ServletContextHandler();
+		context.setContextPath("/");
+		context.addServlet(new ServletHolder(new ContentServlet()),"/*");
+		val gzipHandler = new RangeAwareGzipHandler();
+		gzipHandler.setHandler(context);
+		server.setHandler(gzipHandler);
+		server.start();
+	}
+
+	@AfterEach
+	void stop() throws Exception
+	{
+		server.stop();
+	}
+
+	@Test
+	void compressedResponseDoesNotAdvertiseRanges() throws Exception
+	{
+		val response = get("/text/plain","Accept-Encoding: gzip\r\n");
+		assertEquals("gzip",response.get(HttpHeader.CONTENT_ENCODING));
+		assertEquals("none",response.get(HttpHeader.ACCEPT_RANGES));
+	}
+
+	@Test
+	void uncompressedTypeKeepsRanges() throws Exception
+	{
+		val response = get("/application/zip","Accept-Encoding: gzip\r\n");
+		assertNull(response.get(HttpHeader.CONTENT_ENCODING));
+		assertEquals("bytes",response.get(HttpHeader.ACCEPT_RANGES));
+	}
+
+	@Test
+	void refusedGzipKeepsRanges() throws Exception
+	{
+		val response = get("/text/plain","Accept-Encoding: gzip;q=0, identity\r\n");
+		assertNull(response.get(HttpHeader.CONTENT_ENCODING));
+		assertEquals("bytes",response.get(HttpHeader.ACCEPT_RANGES));
+	}
+
+	@Test
+	void rangeRequestBypassesCompression() throws Exception
+	{
+		val response = get("/text/plain","Accept-Encoding: gzip\r\nRange: bytes=10-\r\n");
+		assertNull(response.get(HttpHeader.CONTENT_ENCODING));
+		assertEquals("bytes",response.get(HttpHeader.ACCEPT_RANGES));
+	}
+
+	private HttpTester.Response get(String path, String headers) throws Exception
+	{
+		return HttpTester.parseResponse(connector.getResponse("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n" + headers + "\r\n"));
+	}
+
+	private static class ContentServlet extends HttpServlet
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException
+		{
+			// Accept-Ranges is set before the content type on purpose
+			response.setHeader(HttpHeader.ACCEPT_RANGES.asString(),"bytes");
+			response.setContentType(request.getPathInfo().substring(1));
+			response.getOutputStream().write(new byte[CONTENT_SIZE]);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import lombok.val;
+
+class TokenBucketTest
+{
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	void burstIsNotDelayed()
+	{
+		val clock = new AtomicLong();
+		val bucket = new TokenBucket(1000,clock::get);
+		assertEquals(0,bucket.acquire(1000));
+	}
+
+	@Test
+	void transferBeyondBurstIsDelayed()
+	{
+		val clock = new AtomicLong();
+		val bucket = new TokenBucket(1000,clock::get);
+		bucket.acquire(1000);
+		assertEquals(SECOND,bucket.acquire(1000));
+		assertEquals(SECOND + SECOND / 2,bucket.acquire(500));
+	}
+
+	@Test
+	void bucketRefillsOverTime()
+	{
+		val clock = new AtomicLong();
+		val bucket = new TokenBucket(1000,clock::get);
+		bucket.acquire(2000);
+		clock.set(2 * SECOND);
+		assertEquals(0,bucket.acquire(1000));
+		assertEquals(SECOND,bucket.acquire(1000));
+	}
+
+	@Test
+	void unusedCapacityDoesNotAccumulateBeyondBurst()
+	{
+		val clock = new AtomicLong();
+		val bucket = new TokenBucket(1000,clock::get);
+		clock.set(10 * SECOND);
+		assertEquals(0,bucket.acquire(1000));
+		assertEquals(SECOND,bucket.acquire(1000));
+	}
+
+	@Test
+	void bucketIsIdleAfterBurstInterval()
+	{
+		val clock = new AtomicLong();
+		val bucket = new TokenBucket(1000,clock::get);
+		bucket.acquire(1000);
+		clock.set(2 * SECOND);
+		assertFalse(bucket.isIdle());
+		clock.set(2 * SECOND + 1);
+		assertTrue(bucket.isIdle());
+	}
+
+	@Test
+	void concurrentAcquiresAreAllAccounted() throws InterruptedException
+	{
+		val clock = new AtomicLong();
+		val bucket = new TokenBucket(1000,clock::get);
+		val threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++)
+			threads.add(new Thread(() ->
+			{
+				for (int j = 0; j < 1000; j++)
+					bucket.acquire(1);
+			}));
+		for (val thread : threads)
+			thread.start();
+		for (val thread : threads)
+			thread.join();
+		assertEquals(3 * SECOND,bucket.acquire(0));
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 E.Luinstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.luin.file.server.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RequestMetricsTest
+{
+	private static final String FILE_CONNECTOR = "server";
+	private static final String WEB_CONNECTOR = "web";
+	RequestMetrics requestMetrics = new RequestMetrics(new SimpleMeterRegistry(),FILE_CONNECTOR,"/files/download","/files/upload",WEB_CONNECTOR,"/service");
+
+	@Test
+	void classifiesFileServerRequests()
+	{
+		assertEquals("download",requestMetrics.getEndpoint(FILE_CONNECTOR,"/files/download/abc"));
+		assertEquals("upload",requestMetrics.getEndpoint(FILE_CONNECTOR,"/files/upload/abc"));
+		assertEquals("upload",requestMetrics.getEndpoint(FILE_CONNECTOR,"/files/upload"));
+		assertEquals("other",requestMetrics.getEndpoint(FILE_CONNECTOR,"/files/other/download/abc"));
+	}
+
+	@Test
+	void classifiesWebServerRequests()
+	{
+		assertEquals("soap",requestMetrics.getEndpoint(WEB_CONNECTOR,"/service/file"));
+		assertEquals("rest",requestMetrics.getEndpoint(WEB_CONNECTOR,"/service/rest/v1/files/abc"));
+		assertEquals("gb",requestMetrics.getEndpoint(WEB_CONNECTOR,"/service/gb"));
+		assertEquals("gb",requestMetrics.getEndpoint(WEB_CONNECTOR,"/service/rest/v1/gb/abc"));
+		assertEquals("other",requestMetrics.getEndpoint(WEB_CONNECTOR,"/other"));
+	}
+
+	@Test
+	void usesTheConnectorNotThePath()
+	{
+		assertEquals("other",requestMetrics.getEndpoint(WEB_CONNECTOR,"/files/download/abc"));
+		assertEquals("other",requestMetrics.getEndpoint(FILE_CONNECTOR,"/service/file"));
+		assertEquals("other",requestMetrics.getEndpoint("health","/files/download/abc"));
+	}
+
+	@Test
+	void matchesWholePathSegments()
+	{
+		assertEquals("rest",requestMetrics.getEndpoint(WEB_CONNECTOR,"/service/rest/v1/files/gb"));
+		assertEquals("rest",requestMetrics.getEndpoint(WEB_CONNECTOR,"/service/rest/v1/files/upload"));
+		assertEquals("soap",requestMetrics.getEndpoint(WEB_CONNECTOR,"/service/gbx"));
+		assertEquals("rest",requestMetrics.getEndpoint(WEB_CONNECTOR,"/service/rest/v1/gbx"));
+		assertEquals("other",requestMetrics.getEndpoint(FILE_CONNECTOR,"/files/downloads/abc"));
+		assertEquals("other",requestMetrics.getEndpoint(WEB_CONNECTOR,"/servicex"));
+	}
+}